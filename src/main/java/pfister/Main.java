@@ -2,10 +2,8 @@ package pfister;
 
 import com.sun.javaws.exceptions.InvalidArgumentException;
 import java.io.IOException;
-import java.util.Optional;
 import java.util.Scanner;
 import pfister.game.AdventureGame;
-import pfister.game.Direction;
 import pfister.input.Command;
 
 public class Main {
@@ -45,36 +43,13 @@ public class Main {
       Command currentCommand = promptForInput();
       String output;
       switch (currentCommand.command) {
-        case "examine":
-          output = game.examine();
-          break;
         case "quit":
         case "exit":
           output = "Thanks for playing, goodbye!";
           quit = true;
           break;
-        case "take":
-          output = game.take(currentCommand.argument);
-          break;
-        case "drop":
-          output = game.drop(currentCommand.argument);
-          break;
-        case "help":
-          output = "Valid commands are: examine, take, drop, smack, go, help, and quit/exit.";
-          break;
-        case "go":
-          Optional<Direction> direction = Direction.parseDirection(currentCommand.argument);
-          if (!direction.isPresent()) {
-            output = "Valid directions are: North, South, East, West.";
-          } else {
-            output = game.go(direction.get());
-          }
-          break;
-        case "smack":
-          output = game.smack();
-          break;
         default:
-          output = "I don't understand '" + currentCommand + "'.";
+          output = game.execute(currentCommand);
           break;
       }
       System.out.println();
@@ -0,0 +1,80 @@
+package pfister.analytics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import pfister.game.Hashing;
+
+/**
+ * Approximate counts for an unbounded set of keys in a fixed amount of memory. Each key is counted
+ * in one cell of every row, and its estimate is the smallest of those cells. Estimates are never
+ * below the true count, and are above it by at most a small fraction of the total count with high
+ * probability. Safe to read while another thread is adding
+ */
+public final class CountMinSketch {
+  private final int depth;
+  private final int widthMask;
+  private final AtomicLongArray cells;
+
+  /**
+   * Creates an empty sketch
+   *
+   * @param depth the number of rows, more rows make a bad estimate less likely
+   * @param width the number of cells in each row, rounded up to a power of two, wider rows make
+   *     estimates closer to the true count
+   */
+  public CountMinSketch(int depth, int width) {
+    if (depth < 1 || width < 1) {
+      throw new IllegalArgumentException("Sketch depth and width must be positive.");
+    }
+    int roundedWidth = Integer.highestOneBit(width);
+    if (roundedWidth < width) {
+      roundedWidth <<= 1;
+    }
+    this.depth = depth;
+    this.widthMask = roundedWidth - 1;
+    this.cells = new AtomicLongArray(depth * roundedWidth);
+  }
+
+  /**
+   * Adds to a key's count
+   *
+   * @param key the key
+   * @param count the amount to add
+   */
+  public void add(String key, long count) {
+    long hash = Hashing.hash64(key);
+    for (int row = 0; row < depth; row++) {
+      cells.addAndGet(cellFor(hash, row), count);
+    }
+  }
+
+  /**
+   * Estimates a key's count
+   *
+   * @param key the key
+   * @return the estimated count, never less than the true count
+   */
+  public long estimate(String key) {
+    long hash = Hashing.hash64(key);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, cells.get(cellFor(hash, row)));
+    }
+    return estimate;
+  }
+
+  /** Each row indexes by a different mix of the two halves of the hash (Kirsch-Mitzenmacher) */
+  private int cellFor(long hash, int row) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    return row * (widthMask + 1) + ((h1 + row * h2) & widthMask);
+  }
+
+  /**
+   * Gets the memory held by the sketch's cells
+   *
+   * @return the size of the cells in bytes
+   */
+  public long getSizeInBytes() {
+    return (long) cells.length() * Long.BYTES;
+  }
+}
@@ -0,0 +1,118 @@
+package pfister.analytics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded queue of gameplay events, written by many game threads and read by one consumer. The
+ * slots are preallocated as parallel arrays, so offering an event allocates nothing. Each slot has
+ * a sequence number saying whether it is free to write or ready to read (Vyukov's bounded queue),
+ * so producers only ever compare and set the tail and never wait for each other or the consumer.
+ * When the queue is full the event is dropped and counted instead
+ */
+final class EventRing {
+  /** Receives the events drained from the ring */
+  interface Handler {
+    void handle(byte type, long session, String subject, String detail, long value);
+  }
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final byte[] types;
+  private final long[] sessions;
+  private final String[] subjects;
+  private final String[] details;
+  private final long[] values;
+  private final AtomicLong tail = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+  /** The next position to read, only touched by the consumer */
+  private long head;
+
+  /**
+   * Creates an empty ring
+   *
+   * @param capacity the number of slots, a power of two
+   */
+  EventRing(int capacity) {
+    if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Ring capacity must be a power of two.");
+    }
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    types = new byte[capacity];
+    sessions = new long[capacity];
+    subjects = new String[capacity];
+    details = new String[capacity];
+    values = new long[capacity];
+  }
+
+  /**
+   * Adds an event if there is room for it
+   *
+   * @return whether the event was added, false if it was dropped
+   */
+  boolean offer(byte type, long session, String subject, String detail, long value) {
+    while (true) {
+      long position = tail.get();
+      int index = (int) (position & mask);
+      long lag = sequences.get(index) - position;
+      if (lag == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          types[index] = type;
+          sessions[index] = session;
+          subjects[index] = subject;
+          details[index] = detail;
+          values[index] = value;
+          // Publishes the fields above to the consumer
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (lag < 0) {
+        // The slot still holds an event from a lap ago, the ring is full
+        dropped.increment();
+        return false;
+      }
+      // Otherwise another producer claimed this position first, try the next one
+    }
+  }
+
+  /**
+   * Hands events to a handler in the order they were added. Must only be called by one thread at
+   * a time
+   *
+   * @param handler the handler to give the events to
+   * @param max the most events to hand over
+   * @return the number of events handed over
+   */
+  int drain(Handler handler, int max) {
+    int drained = 0;
+    while (drained < max) {
+      int index = (int) (head & mask);
+      if (sequences.get(index) != head + 1) {
+        break;
+      }
+      handler.handle(types[index], sessions[index], subjects[index], details[index], values[index]);
+      subjects[index] = null;
+      details[index] = null;
+      // Frees the slot for the producer one lap ahead
+      sequences.set(index, head + capacity);
+      head++;
+      drained++;
+    }
+    return drained;
+  }
+
+  long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+}
@@ -0,0 +1,396 @@
+package pfister.analytics;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import pfister.game.Direction;
+import pfister.game.DirectionExit;
+import pfister.game.GameListener;
+import pfister.game.Hashing;
+import pfister.game.Room;
+import pfister.game.SmackExit;
+
+/**
+ * Live aggregates of how games are being played: room visits, exit use, items taken and dropped,
+ * time to win, and unique players per room. Games feed it through listeners, which only put events
+ * into a ring buffer and never block, dropping events if the buffer is full. A background consumer
+ * drains the buffer into the aggregates
+ *
+ * <p>Memory stays bounded however much is played. Counts are kept in a count-min sketch per
+ * tumbling window, and only the last few windows are kept. Unique players are estimated with a
+ * HyperLogLog per room, for the most recently visited rooms only
+ */
+public class GameAnalytics implements Closeable {
+  /** The number of events the ring buffer holds when no size is given */
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+  /** The length of each window when no length is given, one minute */
+  public static final long DEFAULT_WINDOW_MILLIS = 60_000;
+  /** The number of windows kept when no number is given, covering the last 15 minutes */
+  public static final int DEFAULT_WINDOW_COUNT = 15;
+  /** The number of rooms unique players are counted for when no number is given */
+  public static final int DEFAULT_TRACKED_ROOMS = 1024;
+
+  private static final byte ROOM_ENTERED = 0;
+  private static final byte DIRECTION_EXIT = 1;
+  private static final byte SMACK_EXIT = 2;
+  private static final byte ITEM_TAKEN = 3;
+  private static final byte ITEM_DROPPED = 4;
+  private static final byte WIN = 5;
+
+  private static final int SKETCH_DEPTH = 4;
+  private static final int SKETCH_WIDTH = 4096;
+  private static final int HYPERLOGLOG_PRECISION = 10;
+  private static final int DRAIN_BATCH = 1024;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final EventRing ring;
+  private final long windowNanos;
+  private final int windowCount;
+  private final LongSupplier clock;
+
+  /** The kept windows, newest first. Replaced, never modified, when a new window starts */
+  private volatile Window[] windows;
+  /** Guarded by itself, in access order so the least recently visited room is evicted first */
+  private final Map<String, HyperLogLog> uniquePlayers;
+  /** Only written by the consumer */
+  private volatile long processed;
+
+  private volatile boolean running;
+  private Thread consumer;
+
+  public GameAnalytics() {
+    this(
+        DEFAULT_BUFFER_SIZE,
+        DEFAULT_WINDOW_MILLIS,
+        DEFAULT_WINDOW_COUNT,
+        DEFAULT_TRACKED_ROOMS,
+        System::nanoTime);
+  }
+
+  /**
+   * Creates an analytics pipeline, start must be called for events to be drained in the background
+   *
+   * @param bufferSize the number of events the ring buffer holds, a power of two
+   * @param windowMillis the length of each window
+   * @param windowCount the number of windows kept
+   * @param trackedRooms the number of rooms unique players are counted for
+   * @param clock the source of time in nanoseconds
+   */
+  public GameAnalytics(
+      int bufferSize, long windowMillis, int windowCount, int trackedRooms, LongSupplier clock) {
+    if (windowMillis < 1 || windowCount < 1 || trackedRooms < 1) {
+      throw new IllegalArgumentException("Window length, window count and rooms must be positive.");
+    }
+    this.ring = new EventRing(bufferSize);
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.windowCount = windowCount;
+    this.clock = clock;
+    this.windows = new Window[] {new Window(clock.getAsLong())};
+    this.uniquePlayers =
+        new LinkedHashMap<String, HyperLogLog>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, HyperLogLog> eldest) {
+            return size() > trackedRooms;
+          }
+        };
+  }
+
+  /**
+   * Creates a listener feeding one session's game into this pipeline. Time to win is measured from
+   * when the listener is created
+   *
+   * @param sessionId the session, used to count unique players
+   * @return the listener
+   */
+  public GameListener listenerFor(String sessionId) {
+    return new SessionListener(Hashing.hash64(sessionId), clock.getAsLong());
+  }
+
+  /** Starts draining events on a background daemon thread */
+  public synchronized void start() {
+    if (consumer != null) return;
+    running = true;
+    consumer = new Thread(this::consume, "game-analytics");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  /** Stops the background thread, then drains whatever events are left */
+  @Override
+  public synchronized void close() {
+    running = false;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+      try {
+        consumer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      consumer = null;
+    }
+    while (drain() > 0) {}
+  }
+
+  private void consume() {
+    while (running) {
+      if (drain() == 0) {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  /**
+   * Drains a batch of waiting events into the aggregates on the calling thread, starting a new
+   * window first if the current one is over. The background thread calls this in a loop, it must
+   * only be called directly when that thread is not running
+   *
+   * @return the number of events drained
+   */
+  public int drain() {
+    long now = clock.getAsLong();
+    Window[] kept = windows;
+    if (now - kept[0].start >= windowNanos) {
+      Window[] rotated = new Window[Math.min(kept.length + 1, windowCount)];
+      rotated[0] = new Window(now);
+      System.arraycopy(kept, 0, rotated, 1, rotated.length - 1);
+      windows = rotated;
+      kept = rotated;
+    }
+    Window current = kept[0];
+    int drained =
+        ring.drain(
+            (type, session, subject, detail, value) ->
+                record(current, type, session, subject, detail, value),
+            DRAIN_BATCH);
+    processed += drained;
+    return drained;
+  }
+
+  private void record(
+      Window window, byte type, long session, String subject, String detail, long value) {
+    switch (type) {
+      case ROOM_ENTERED:
+        window.counts.add(roomKey(subject), 1);
+        synchronized (uniquePlayers) {
+          uniquePlayers
+              .computeIfAbsent(subject, room -> new HyperLogLog(HYPERLOGLOG_PRECISION))
+              .add(session);
+        }
+        break;
+      case DIRECTION_EXIT:
+        window.counts.add(directionKey(subject, detail), 1);
+        break;
+      case SMACK_EXIT:
+        window.counts.add(smackKey(subject, detail), 1);
+        break;
+      case ITEM_TAKEN:
+        window.counts.add(takeKey(detail), 1);
+        break;
+      case ITEM_DROPPED:
+        window.counts.add(dropKey(detail), 1);
+        break;
+      case WIN:
+        window.wins.incrementAndGet();
+        window.winNanos.addAndGet(value);
+        break;
+      default:
+        throw new IllegalStateException("Unknown event type " + type + ".");
+    }
+  }
+
+  private static String roomKey(String room) {
+    return "room:" + room;
+  }
+
+  private static String directionKey(String room, String direction) {
+    return "go:" + room + ":" + direction;
+  }
+
+  private static String smackKey(String room, String item) {
+    return "smack:" + room + ":" + item;
+  }
+
+  private static String takeKey(String item) {
+    return "take:" + item;
+  }
+
+  private static String dropKey(String item) {
+    return "drop:" + item;
+  }
+
+  /** Sums a key's estimated count over the windows still inside the kept time span */
+  private long estimate(String key) {
+    long since = clock.getAsLong() - windowNanos * windowCount;
+    long total = 0;
+    for (Window window : windows) {
+      if (window.start - since > 0) {
+        total += window.counts.estimate(key);
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Estimates the visits to a room over the kept windows
+   *
+   * @param roomName the room
+   * @return the estimated number of visits, never less than the true number
+   */
+  public long getRoomVisits(String roomName) {
+    return estimate(roomKey(roomName));
+  }
+
+  /**
+   * Estimates the uses of a room's DirectionExit over the kept windows
+   *
+   * @param roomName the room the exit leaves
+   * @param direction the direction of the exit
+   * @return the estimated number of uses, never less than the true number
+   */
+  public long getDirectionExitUses(String roomName, Direction direction) {
+    return estimate(directionKey(roomName, direction.name()));
+  }
+
+  /**
+   * Estimates the uses of a room's SmackExit over the kept windows
+   *
+   * @param roomName the room the exit leaves
+   * @param itemUsed the item the exit needs, empty for the room's default smack exit
+   * @return the estimated number of uses, never less than the true number
+   */
+  public long getSmackExitUses(String roomName, String itemUsed) {
+    return estimate(smackKey(roomName, itemUsed));
+  }
+
+  /**
+   * Estimates the number of times an item was taken over the kept windows
+   *
+   * @param item the item
+   * @return the estimated number of takes, never less than the true number
+   */
+  public long getItemTakes(String item) {
+    return estimate(takeKey(item));
+  }
+
+  /**
+   * Estimates the number of times an item was dropped over the kept windows
+   *
+   * @param item the item
+   * @return the estimated number of drops, never less than the true number
+   */
+  public long getItemDrops(String item) {
+    return estimate(dropKey(item));
+  }
+
+  /**
+   * Estimates the number of different sessions which have entered a room, since the room last fell
+   * out of the tracked rooms
+   *
+   * @param roomName the room
+   * @return the estimated number of unique players, 0 if the room is not tracked
+   */
+  public long getUniquePlayers(String roomName) {
+    synchronized (uniquePlayers) {
+      HyperLogLog players = uniquePlayers.get(roomName);
+      return players == null ? 0 : players.estimate();
+    }
+  }
+
+  /**
+   * Gets the number of wins over the kept windows
+   *
+   * @return the number of wins
+   */
+  public long getWinCount() {
+    long wins = 0;
+    for (Window window : windows) {
+      wins += window.wins.get();
+    }
+    return wins;
+  }
+
+  /**
+   * Gets the average time taken to win over the kept windows
+   *
+   * @return the average time in milliseconds, 0 if nobody has won
+   */
+  public double getAverageTimeToWinMillis() {
+    long wins = 0;
+    long winNanos = 0;
+    for (Window window : windows) {
+      wins += window.wins.get();
+      winNanos += window.winNanos.get();
+    }
+    return wins == 0 ? 0 : (double) winNanos / wins / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  public long getProcessedEventCount() {
+    return processed;
+  }
+
+  /**
+   * Gets the number of events dropped because the ring buffer was full
+   *
+   * @return the number of dropped events
+   */
+  public long getDroppedEventCount() {
+    return ring.getDroppedCount();
+  }
+
+  /** The aggregates for one tumbling window, only written by the consumer */
+  private static final class Window {
+    private final long start;
+    private final CountMinSketch counts = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final AtomicLong wins = new AtomicLong();
+    private final AtomicLong winNanos = new AtomicLong();
+
+    private Window(long start) {
+      this.start = start;
+    }
+  }
+
+  /** Turns one session's game events into ring buffer events */
+  private final class SessionListener implements GameListener {
+    private final long session;
+    private final long startedAt;
+
+    private SessionListener(long session, long startedAt) {
+      this.session = session;
+      this.startedAt = startedAt;
+    }
+
+    @Override
+    public void onRoomEntered(Room room) {
+      ring.offer(ROOM_ENTERED, session, room.getRoomName(), null, 0);
+    }
+
+    @Override
+    public void onDirectionExit(Room from, DirectionExit exit) {
+      ring.offer(DIRECTION_EXIT, session, from.getRoomName(), exit.getDirection().name(), 0);
+    }
+
+    @Override
+    public void onSmackExit(Room from, SmackExit exit, String itemUsed) {
+      ring.offer(SMACK_EXIT, session, from.getRoomName(), itemUsed, 0);
+    }
+
+    @Override
+    public void onItemTaken(Room room, String item) {
+      ring.offer(ITEM_TAKEN, session, room.getRoomName(), item, 0);
+    }
+
+    @Override
+    public void onItemDropped(Room room, String item) {
+      ring.offer(ITEM_DROPPED, session, room.getRoomName(), item, 0);
+    }
+
+    @Override
+    public void onWin() {
+      ring.offer(WIN, session, null, null, clock.getAsLong() - startedAt);
+    }
+  }
+}
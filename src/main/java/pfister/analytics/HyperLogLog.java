@@ -0,0 +1,73 @@
+package pfister.analytics;
+
+/**
+ * Estimates the number of distinct values added to it in a fixed amount of memory. Each value's
+ * hash picks a register, and the register keeps the longest run of leading zeros seen in the rest
+ * of the hash. With 2^precision registers the standard error is about 1.04 / sqrt(2^precision). Not
+ * thread safe
+ */
+public final class HyperLogLog {
+  private final int precision;
+  private final byte[] registers;
+
+  /**
+   * Creates an empty estimator
+   *
+   * @param precision the number of hash bits used to pick a register, from 4 to 16
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 16) {
+      throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 16.");
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Adds a value, given by its 64 bit hash
+   *
+   * @param hash the hash of the value, its bits must be evenly spread
+   */
+  public void add(long hash) {
+    int register = (int) (hash >>> (64 - precision));
+    // The marker bit stops the count of leading zeros running past the end of the hash
+    long rest = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > registers[register]) {
+      registers[register] = rank;
+    }
+  }
+
+  /**
+   * Estimates the number of distinct values added
+   *
+   * @return the estimated count
+   */
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int empty = 0;
+    for (byte rank : registers) {
+      sum += 1.0 / (1L << rank);
+      if (rank == 0) {
+        empty++;
+      }
+    }
+    double alpha = 0.7213 / (1 + 1.079 / m);
+    double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && empty > 0) {
+      // Few values, counting the empty registers is more accurate (linear counting)
+      estimate = m * Math.log((double) m / empty);
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * Gets the memory held by the registers
+   *
+   * @return the size of the registers in bytes
+   */
+  public int getSizeInBytes() {
+    return registers.length;
+  }
+}
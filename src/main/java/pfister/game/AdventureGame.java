@@ -2,7 +2,9 @@ package pfister.game;
 
 import com.sun.javaws.exceptions.InvalidArgumentException;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
@@ -10,10 +12,21 @@ import java.util.Set;
 import one.util.streamex.EntryStream;
 import one.util.streamex.StreamEx;
 import org.jgrapht.alg.util.Pair;
+import pfister.input.Command;
 
 public class AdventureGame {
-  private final GameMap gameMap;
+  private final WorldMap gameMap;
   private final Set<String> inventory;
+  /**
+   * This game's own copies of the rooms whose items the player has changed, keyed by room name.
+   * Items are taken from and dropped into these copies, so the rooms held by the map are never
+   * modified. Every other room is played in straight from the map
+   */
+  private final Map<String, Room> changedRooms;
+  /** Cache of examine output shared with other games in the same map, null to not cache */
+  private final ExamineCache examineCache;
+  /** Told about every move and item change, null if nothing is listening */
+  private GameListener listener;
   private Room currentRoom;
 
   /**
@@ -24,9 +37,32 @@ public class AdventureGame {
    * @throws InvalidArgumentException If the json file cannot be parsed as a valid game map
    */
   public AdventureGame(String jsonPath) throws IOException, InvalidArgumentException {
-    gameMap = new GameMap(jsonPath);
-    currentRoom = gameMap.getStartingRoom();
+    this(new GameMap(jsonPath));
+  }
+
+  /**
+   * Construct the AdventureGame object from an already loaded map, the map is only read from so it
+   * may be shared between several games
+   *
+   * @param gameMap the map to play in
+   */
+  public AdventureGame(WorldMap gameMap) {
+    this(gameMap, null);
+  }
+
+  /**
+   * Construct the AdventureGame object from an already loaded map, caching examine output in a
+   * cache shared with the other games played in the same map
+   *
+   * @param gameMap the map to play in
+   * @param examineCache the cache of examine output for this map, or null to not cache
+   */
+  public AdventureGame(WorldMap gameMap, ExamineCache examineCache) {
+    this.gameMap = gameMap;
+    this.examineCache = examineCache;
     inventory = new HashSet<>();
+    changedRooms = new HashMap<>();
+    currentRoom = setupRoom(gameMap.getStartingRoom());
   }
 
   public Room getCurrentRoom() {
@@ -38,17 +74,115 @@ public class AdventureGame {
   }
 
   /**
-   * Sets up a room before the player moves into it Currently removes any items that the player
-   * already has in their inventory from the room
+   * Estimates the heap retained by this game on top of its map: the player's inventory, and this
+   * game's copies of the rooms whose items the player has changed. Item names and room text are
+   * shared with the map, so they are not counted here
+   *
+   * @return the estimated footprint of the game, with the changed rooms as its room count and the
+   *     inventory as its item count
+   */
+  public Footprint getFootprint() {
+    long graph = HeapEstimator.hashMap(changedRooms.size(), false);
+    long itemSets = 0;
+    for (Room room : changedRooms.values()) {
+      graph += HeapEstimator.object(3, 0);
+      itemSets += HeapEstimator.hashSet(room.getItems().size());
+    }
+    long inventoryBytes = HeapEstimator.hashSet(inventory.size());
+    return new Footprint(
+        changedRooms.size(), 0, inventory.size(), graph, 0, itemSets, inventoryBytes);
+  }
+
+  /**
+   * Sets the listener told about what happens in this game from now on
+   *
+   * @param listener the listener, or null to stop listening
+   */
+  public void setListener(GameListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Gets this game's copies of the rooms whose items the player has changed, for saving the game's
+   * state
+   *
+   * @return the changed rooms
+   */
+  Collection<Room> getChangedRooms() {
+    return changedRooms.values();
+  }
+
+  /**
+   * Replaces this game's state with a saved one
+   *
+   * @param roomId the id of the room the player is in
+   * @param savedInventory the player's inventory
+   * @param changedRooms copies of the rooms whose items differ from the map
+   */
+  void restore(int roomId, Set<String> savedInventory, Collection<Room> changedRooms) {
+    inventory.clear();
+    inventory.addAll(savedInventory);
+    this.changedRooms.clear();
+    for (Room room : changedRooms) {
+      this.changedRooms.put(room.getRoomName(), room);
+    }
+    currentRoom = setupRoom(gameMap.getRoom(roomId));
+  }
+
+  /**
+   * Sets up a room before the player moves into it Swaps the map's room for this game's copy of it
+   * if there is one, then removes any items that the player already has in their inventory from
+   * the room. The room is only copied if it holds such an item
    *
    * @param r the room to set up
-   * @return the room, after being set up
+   * @return this game's copy of the room, or the map's room if its items are unchanged
    */
   private Room setupRoom(Room r) {
+    Room room = changedRooms.get(r.getRoomName());
+    if (room == null) {
+      if (Collections.disjoint(r.getItems(), inventory)) {
+        return r;
+      }
+      room = copyRoom(r);
+    }
     for (String item : inventory) {
-      r.removeItem(item);
+      room.removeItem(item);
+    }
+    return room;
+  }
+
+  /**
+   * Makes this game's own copy of a room, before its items are first changed
+   *
+   * @param r the map's room
+   * @return the copy
+   */
+  private Room copyRoom(Room r) {
+    Room room = new Room(r.getRoomName(), r.getDescription(), r.getItems());
+    changedRooms.put(room.getRoomName(), room);
+    return room;
+  }
+
+  /** Swaps the current room for this game's copy of it, copying it if it is still the map's */
+  private void changeCurrentRoom() {
+    if (changedRooms.get(currentRoom.getRoomName()) != currentRoom) {
+      currentRoom = copyRoom(currentRoom);
+    }
+  }
+
+  /**
+   * Moves the player into a room, telling the listener
+   *
+   * @param r the room to move into
+   */
+  private void enterRoom(Room r) {
+    currentRoom = setupRoom(r);
+    if (listener != null) {
+      listener.onRoomEntered(currentRoom);
+      if (hasPlayerWon()) {
+        listener.onWin();
+      }
     }
-    return r;
   }
 
   /**
@@ -66,6 +200,18 @@ public class AdventureGame {
    * @return a string of information about the current room
    */
   public String examine() {
+    if (examineCache == null) {
+      return renderExamine();
+    }
+    return examineCache.get(currentRoom, inventory, this::renderExamine);
+  }
+
+  /**
+   * Builds the examine text for the current room
+   *
+   * @return a string of information about the current room
+   */
+  private String renderExamine() {
     String examineString = this.currentRoom.getDescription();
     if (hasPlayerWon()) {
       return examineString;
@@ -79,6 +225,36 @@ public class AdventureGame {
     return examineString;
   }
 
+  /**
+   * Runs a command the player entered. Quitting is left to the caller, since only the caller knows
+   * what ending a game means
+   *
+   * @param command the command and its argument
+   * @return a string describing the interaction
+   */
+  public String execute(Command command) {
+    switch (command.command) {
+      case "examine":
+        return examine();
+      case "take":
+        return take(command.argument);
+      case "drop":
+        return drop(command.argument);
+      case "help":
+        return "Valid commands are: examine, take, drop, smack, go, help, and quit/exit.";
+      case "go":
+        Optional<Direction> direction = Direction.parseDirection(command.argument);
+        if (!direction.isPresent()) {
+          return "Valid directions are: North, South, East, West.";
+        }
+        return go(direction.get());
+      case "smack":
+        return smack();
+      default:
+        return "I don't understand '" + command + "'.";
+    }
+  }
+
   /**
    * Attempt to take an item from the current room and place it in the user's inventory
    *
@@ -92,8 +268,12 @@ public class AdventureGame {
     if (!currentRoom.containsItem(item)) {
       return "There is no item '" + item + "' in this room.";
     }
+    changeCurrentRoom();
     currentRoom.removeItem(item);
     inventory.add(item);
+    if (listener != null) {
+      listener.onItemTaken(currentRoom, item);
+    }
     return "You take the '" + item + "'.";
   }
 
@@ -111,7 +291,11 @@ public class AdventureGame {
       return "There is no item '" + item + "' in your inventory.";
     }
     inventory.remove(item);
+    changeCurrentRoom();
     currentRoom.addItem(item);
+    if (listener != null) {
+      listener.onItemDropped(currentRoom, item);
+    }
     return "You drop the '" + item + "'.";
   }
 
@@ -130,7 +314,10 @@ public class AdventureGame {
     if (!exit.isPresent()) {
       return "You cannot go " + direction + " from here.";
     }
-    currentRoom = setupRoom(gameMap.getNextRoom(exit.get()).get());
+    if (listener != null) {
+      listener.onDirectionExit(currentRoom, exit.get());
+    }
+    enterRoom(gameMap.getNextRoom(exit.get()).get());
 
     if (!exit.get().getOutcomeText().isEmpty()) {
       return exit.get().getOutcomeText() + "\n\n" + examine();
@@ -172,8 +359,11 @@ public class AdventureGame {
       itemAndExitUsed = Optional.of(Pair.of("", exit.get()));
     }
     String usedItem = itemAndExitUsed.get().getFirst();
-    RoomExit exitUsed = itemAndExitUsed.get().getSecond();
-    currentRoom = setupRoom(gameMap.getNextRoom(exitUsed).get());
+    SmackExit exitUsed = itemAndExitUsed.get().getSecond();
+    if (listener != null) {
+      listener.onSmackExit(currentRoom, exitUsed, usedItem);
+    }
+    enterRoom(gameMap.getNextRoom(exitUsed).get());
 
     if (usedItem.isEmpty()) {
       return exitUsed.getDescription() + "\n\n" + examine();
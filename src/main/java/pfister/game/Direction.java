@@ -16,6 +16,9 @@ public enum Direction {
    * @return A optional direction, empty if the string could not be parsed to a direction
    */
   public static Optional<Direction> parseDirection(String dir) {
+    if (dir.isEmpty()) {
+      return Optional.empty();
+    }
     String titleCased = dir.substring(0, 1).toUpperCase() + dir.substring(1).toLowerCase();
     try {
       return Optional.of(Direction.valueOf(titleCased));
@@ -0,0 +1,181 @@
+package pfister.game;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of the text examine() produces, which can be shared by every game played in the
+ * same map. The output only depends on the room, the player's inventory and the items in the room,
+ * so most players standing in a room get exactly the same text. Entries are looked up by the room
+ * name and a fingerprint of the two item sets, and the sets themselves are compared on a hit, so a
+ * fingerprint collision is just a miss. The cache is split into segments, each evicting its least
+ * recently used entry when full, so games on different threads rarely wait on each other
+ *
+ * <p>A cache must only be used with one map, since exits are not part of the key
+ */
+public final class ExamineCache {
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private static final int MAX_SEGMENTS = 16;
+
+  private final Segment[] segments;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public ExamineCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates an empty cache
+   *
+   * @param capacity the most entries to keep before evicting
+   */
+  public ExamineCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Cache capacity must be at least 1.");
+    }
+    int segmentCount = Math.min(MAX_SEGMENTS, capacity);
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      // Spread the capacity over the segments, the first few take the remainder
+      segments[i] = new Segment(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+    }
+  }
+
+  /**
+   * Gets the examine output for a room, rendering and caching it if it is not already cached
+   *
+   * @param room the room the player is in
+   * @param inventory the player's inventory
+   * @param render renders the output when it is not cached
+   * @return the examine output
+   */
+  String get(Room room, Set<String> inventory, Supplier<String> render) {
+    Key key = new Key(room.getRoomName(), fingerprint(inventory, room.getItems()));
+    Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % segments.length];
+    CachedOutput cached;
+    synchronized (segment) {
+      cached = segment.get(key);
+    }
+    if (cached != null
+        && cached.inventory.equals(inventory)
+        && cached.roomItems.equals(room.getItems())) {
+      hits.increment();
+      return cached.output;
+    }
+    misses.increment();
+    String output = render.get();
+    CachedOutput rendered = new CachedOutput(inventory, room.getItems(), output);
+    synchronized (segment) {
+      segment.put(key, rendered);
+    }
+    return output;
+  }
+
+  /**
+   * Combines the two item sets into a fingerprint that does not depend on iteration order
+   *
+   * @return the fingerprint
+   */
+  private static long fingerprint(Set<String> inventory, Set<String> roomItems) {
+    long fingerprint = 0;
+    for (String item : inventory) {
+      fingerprint += Hashing.mix64(item.hashCode());
+    }
+    // Mix the room items separately, so moving an item between the sets changes the fingerprint
+    for (String item : roomItems) {
+      fingerprint += Hashing.mix64(~item.hashCode());
+    }
+    return fingerprint;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Gets the number of entries currently cached
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  private static final class Key {
+    private final String roomName;
+    private final long fingerprint;
+
+    private Key(String roomName, long fingerprint) {
+      this.roomName = roomName;
+      this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key other = (Key) o;
+      return fingerprint == other.fingerprint && roomName.equals(other.roomName);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * roomName.hashCode() + Long.hashCode(fingerprint);
+    }
+  }
+
+  /** A cached output, along with the item sets it was rendered for */
+  private static final class CachedOutput {
+    private final Set<String> inventory;
+    private final Set<String> roomItems;
+    private final String output;
+
+    private CachedOutput(Set<String> inventory, Set<String> roomItems, String output) {
+      this.inventory = inventory.isEmpty() ? Collections.emptySet() : new HashSet<>(inventory);
+      this.roomItems = roomItems.isEmpty() ? Collections.emptySet() : new HashSet<>(roomItems);
+      this.output = output;
+    }
+  }
+
+  /** One segment of the cache, in least recently used order. Guarded by its own lock */
+  private final class Segment extends LinkedHashMap<Key, CachedOutput> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    private Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, CachedOutput> eldest) {
+      if (size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package pfister.game;
+
+/**
+ * An estimate of the heap retained by a map or a game, split by what the memory is used for, along
+ * with the number of rooms, exits and items it covers. Footprints are estimates from the known
+ * layout of each structure rather than measurements, they are meant for capacity planning and for
+ * catching memory regressions, not for exact accounting
+ */
+public final class Footprint {
+  private final int roomCount;
+  private final int exitCount;
+  private final int itemCount;
+  private final long graphBytes;
+  private final long textBytes;
+  private final long itemSetBytes;
+  private final long inventoryBytes;
+
+  /**
+   * Creates a footprint
+   *
+   * @param roomCount the number of rooms
+   * @param exitCount the number of exits
+   * @param itemCount the number of distinct items
+   * @param graphBytes the memory held by rooms, exits and the structures linking them
+   * @param textBytes the memory held by names, descriptions and other text
+   * @param itemSetBytes the memory held by the sets of items in rooms
+   * @param inventoryBytes the memory held by players' inventories
+   */
+  Footprint(
+      int roomCount,
+      int exitCount,
+      int itemCount,
+      long graphBytes,
+      long textBytes,
+      long itemSetBytes,
+      long inventoryBytes) {
+    this.roomCount = roomCount;
+    this.exitCount = exitCount;
+    this.itemCount = itemCount;
+    this.graphBytes = graphBytes;
+    this.textBytes = textBytes;
+    this.itemSetBytes = itemSetBytes;
+    this.inventoryBytes = inventoryBytes;
+  }
+
+  /**
+   * Adds two footprints together, such as the footprints of every session on a server. Item counts
+   * are added too, so items shared by both are counted twice
+   *
+   * @param other the footprint to add
+   * @return the combined footprint
+   */
+  public Footprint plus(Footprint other) {
+    return new Footprint(
+        roomCount + other.roomCount,
+        exitCount + other.exitCount,
+        itemCount + other.itemCount,
+        graphBytes + other.graphBytes,
+        textBytes + other.textBytes,
+        itemSetBytes + other.itemSetBytes,
+        inventoryBytes + other.inventoryBytes);
+  }
+
+  public int getRoomCount() {
+    return roomCount;
+  }
+
+  public int getExitCount() {
+    return exitCount;
+  }
+
+  public int getItemCount() {
+    return itemCount;
+  }
+
+  public long getGraphBytes() {
+    return graphBytes;
+  }
+
+  public long getTextBytes() {
+    return textBytes;
+  }
+
+  public long getItemSetBytes() {
+    return itemSetBytes;
+  }
+
+  public long getInventoryBytes() {
+    return inventoryBytes;
+  }
+
+  /**
+   * Gets the estimated heap retained in total
+   *
+   * @return the total size in bytes
+   */
+  public long getTotalBytes() {
+    return graphBytes + textBytes + itemSetBytes + inventoryBytes;
+  }
+
+  @Override
+  public String toString() {
+    return roomCount
+        + " rooms, "
+        + exitCount
+        + " exits, "
+        + itemCount
+        + " items: "
+        + getTotalBytes()
+        + " bytes (graph "
+        + graphBytes
+        + ", text "
+        + textBytes
+        + ", item sets "
+        + itemSetBytes
+        + ", inventory "
+        + inventoryBytes
+        + ")";
+  }
+}
@@ -0,0 +1,51 @@
+package pfister.game;
+
+/**
+ * Told about what happens in an AdventureGame, after it happens. Listeners are called on the
+ * thread running the game, in the middle of a command, so they must return quickly and must never
+ * block
+ */
+public interface GameListener {
+  /**
+   * Called when the player moves into a room
+   *
+   * @param room the room the player entered
+   */
+  void onRoomEntered(Room room);
+
+  /**
+   * Called when the player leaves a room through a DirectionExit, before the next room is entered
+   *
+   * @param from the room the player left
+   * @param exit the exit the player took
+   */
+  void onDirectionExit(Room from, DirectionExit exit);
+
+  /**
+   * Called when the player leaves a room through a SmackExit, before the next room is entered
+   *
+   * @param from the room the player left
+   * @param exit the exit the player took
+   * @param itemUsed the item broken to take the exit, empty for the room's default smack exit
+   */
+  void onSmackExit(Room from, SmackExit exit, String itemUsed);
+
+  /**
+   * Called when the player takes an item from a room
+   *
+   * @param room the room the item was taken from
+   * @param item the item
+   */
+  void onItemTaken(Room room, String item);
+
+  /**
+   * Called when the player drops an item into a room
+   *
+   * @param room the room the item was dropped in
+   * @param item the item
+   */
+  void onItemDropped(Room room, String item);
+
+  /** Called when the player enters the "win" room, after onRoomEntered */
+  void onWin();
+}
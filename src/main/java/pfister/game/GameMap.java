@@ -1,34 +1,44 @@
 package pfister.game;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonIOException;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.bind.JsonTreeReader;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
-import one.util.streamex.StreamEx;
 import org.jgrapht.Graph;
+import org.jgrapht.alg.util.Pair;
 import org.jgrapht.graph.DirectedPseudograph;
 
-public class GameMap {
+public class GameMap implements WorldMap {
   private final Graph<Room, RoomExit> roomGraph;
+  /** The rooms in the order they appear in the json file, a room's index is its id */
+  private final List<Room> rooms;
+
+  private final Map<Room, Integer> roomIds;
+
+  private final Room startingRoom;
 
   /**
-   * Loads the json file from the path, then constructs the GameMap
+   * Loads the json file from the path, then constructs the GameMap. The file is streamed through
+   * RoomReader, so no json tree is built and nothing is bound by reflection
    *
    * @param jsonPath the path to the JSON file
    * @throws IOException If the the json file cannot be read or does not exist at the passed
@@ -41,17 +51,35 @@ public class GameMap {
   /**
    * Constructs the game map from a json file. Creates a graph where the vertices are the rooms, and
    * the edges are the potential exits from those rooms. Either from a "go" command
-   * (DirectionExit),or a "smack" command (SmackExit)
+   * (DirectionExit),or a "smack" command (SmackExit). The array is read through RoomReader, so it
+   * is checked exactly as a map file is
    *
    * @param jsonRooms a JsonArray containing a list of rooms
    * @throws InvalidArgumentException If the json file cannot be validly parsed as a game map
    */
   public GameMap(JsonArray jsonRooms) throws InvalidArgumentException {
+    this(createRoomToExitsMap(jsonRooms));
+  }
+
+  /**
+   * Constructs the game map from rooms that have already been parsed and checked
+   *
+   * @param roomToExitsMap the rooms in file order, mapped to their exits
+   * @throws InvalidArgumentException If an exit leads to a room that is not in the map
+   */
+  private GameMap(Map<Room, List<RoomExit>> roomToExitsMap) throws InvalidArgumentException {
     roomGraph = new DirectedPseudograph<>(RoomExit.class);
-    Map<Room, List<RoomExit>> roomToExitsMap = createRoomToExitsMap(jsonRooms);
 
     // Add all rooms to graph before iteration, so we can add edges between them
     roomToExitsMap.forEach((r, i) -> roomGraph.addVertex(r));
+    rooms = new ArrayList<>(roomToExitsMap.keySet());
+    roomIds = new HashMap<>();
+    Map<String, Room> roomsByName = new HashMap<>();
+    for (int id = 0; id < rooms.size(); id++) {
+      roomIds.put(rooms.get(id), id);
+      roomsByName.put(rooms.get(id).getRoomName(), rooms.get(id));
+    }
+    startingRoom = roomsByName.get("StartingRoom");
     // Load rooms and exits into graph
     for (Entry<Room, List<RoomExit>> exits : roomToExitsMap.entrySet()) {
       for (RoomExit roomExit : exits.getValue()) {
@@ -60,12 +88,9 @@ public class GameMap {
           roomGraph.addEdge(exits.getKey(), exits.getKey(), roomExit);
           continue;
         }
-        // Otherwise look for the next room in the vertex set, and create an edge between the two
-        // rooms
-        Optional<Room> nextRoom =
-            StreamEx.of(roomGraph.vertexSet())
-                .findFirst(v -> v.getRoomName().equals(roomExit.getNextRoom()));
-        if (!nextRoom.isPresent()) {
+        // Otherwise look up the next room by name, and create an edge between the two rooms
+        Room nextRoom = roomsByName.get(roomExit.getNextRoom());
+        if (nextRoom == null) {
           throw new InvalidArgumentException(
               new String[] {
                 "Error parsing JSON map. Room '"
@@ -73,33 +98,28 @@ public class GameMap {
                     + "' is not found in the game map."
               });
         }
-        roomGraph.addEdge(exits.getKey(), nextRoom.get(), roomExit);
+        roomGraph.addEdge(exits.getKey(), nextRoom, roomExit);
       }
     }
   }
 
   /**
-   * Loads a JSON file from a path, validates that it can be read, and parses it into a JSON array
+   * Streams a JSON file from a path one room at a time, parsing it into a Map of rooms and their
+   * exits
    *
    * @param jsonPath a string containing the location of the json map file
-   * @return a JsonArray containing the map rooms
+   * @return a map between rooms and their exits
    * @throws IOException If the path specified is not found, or could not be opened for reading
-   * @throws InvalidArgumentException If the json file is not a valid json file, or does not have a
-   *     top level array object
+   * @throws InvalidArgumentException If the json file is not a valid json file, does not have a top
+   *     level array object, or cannot be parsed properly as a map
    */
-  private static JsonArray readJsonMapFile(String jsonPath)
+  private static Map<Room, List<RoomExit>> readJsonMapFile(String jsonPath)
       throws IOException, InvalidArgumentException {
-    FileReader reader = new FileReader(jsonPath);
-    JsonArray rooms;
-    try {
-      rooms = (JsonArray) JsonParser.parseReader(reader);
-    } catch (ClassCastException | JsonIOException | JsonSyntaxException e) {
-      throw new InvalidArgumentException(
-          new String[] {
-            "Passed file cannot be parsed as a JSON file or the top level object is not an array."
-          });
+    try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(jsonPath)))) {
+      // Lenient like JsonParser, so hand written maps with comments or unquoted names still load
+      reader.setLenient(true);
+      return readRooms(reader);
     }
-    return rooms;
   }
 
   /**
@@ -109,109 +129,82 @@ public class GameMap {
    * @return a map between rooms and their exits
    * @throws InvalidArgumentException If the json cannot be parsed properly
    */
-  private Map<Room, List<RoomExit>> createRoomToExitsMap(JsonArray jsonMap)
+  private static Map<Room, List<RoomExit>> createRoomToExitsMap(JsonArray jsonMap)
       throws InvalidArgumentException {
-    Gson gson = new Gson();
-    // Holds a mapping between each room and its potential ways of exiting the room, these will be
-    // edges in the graph after the vertices (rooms) are added
-    Map<Room, List<RoomExit>> roomToExitsMap = new HashMap<>();
-    boolean startingRoomIsDefinedInJSON = false;
-    // Read JSON into roomExits map
-    for (JsonElement jsonRoom : jsonMap) {
-      if (!jsonRoom.isJsonObject()) {
-        throw new InvalidArgumentException(
-            new String[] {
-              "Element in rooms array cannot be parsed as a valid room: " + jsonRoom.toString()
-            });
-      }
-      JsonObject roomObject = jsonRoom.getAsJsonObject();
-      Room room;
-      JsonArray jsonDirExits;
-      JsonArray jsonSmackExits;
-      try {
-        room = gson.fromJson(jsonRoom, Room.class);
-        jsonDirExits = roomObject.getAsJsonArray("directionExits");
-        jsonSmackExits = roomObject.getAsJsonArray("smackExits");
-      } catch (ClassCastException | JsonSyntaxException | NullPointerException e) {
-        throw new InvalidArgumentException(
-            new String[] {
-              "Element in rooms array cannot be parsed as a valid room: " + jsonRoom.toString()
-            });
-      }
-      if (room.getRoomName() == null || room.getItems() == null || room.getDescription() == null) {
-        throw new InvalidArgumentException(
-            new String[] {
-              "Room object must have defined fields of : roomName, items, description. Room: "
-                  + jsonRoom.toString()
-            });
-      }
-      // Check for room name uniqueness
-      if (StreamEx.of(roomToExitsMap.keySet())
-          .findAny(v -> v.getRoomName().equals(room.getRoomName()))
-          .isPresent()) {
-        throw new InvalidArgumentException(
-            new String[] {"Duplicate room name in JSON file of '" + room.getRoomName() + "'"});
-      }
-
-      List<RoomExit> exitsFromRoom = new ArrayList<>();
-      List<DirectionExit> dirExits;
-      try {
-        dirExits = Arrays.asList(gson.fromJson(jsonDirExits, DirectionExit[].class));
-        if (StreamEx.of(dirExits).findAny(d -> d.getDirection() == null).isPresent()) {
-          throw new JsonSyntaxException("");
-        }
-      } catch (JsonSyntaxException e) {
-        throw new InvalidArgumentException(
-            new String[] {
-              "Direction exits in room '" + room.getRoomName() + "' cannot be parsed properly."
-            });
-      }
-      // Check for no duplicate direction exits
-      if (StreamEx.of(dirExits).distinct(DirectionExit::getDirection).count() < dirExits.size()) {
-        throw new InvalidArgumentException(
-            new String[] {
-              "Directions within 'directionExits' are not unique for room '"
-                  + room.getRoomName()
-                  + "'"
-            });
-      }
+    try (JsonReader reader = new JsonTreeReader(jsonMap)) {
+      return readRooms(reader);
+    } catch (IOException e) {
+      // Reading a tree that is already in memory has nothing to fail on
+      throw new UncheckedIOException(e);
+    }
+  }
 
-      List<SmackExit> smackExits;
-      try {
-        smackExits = Arrays.asList(gson.fromJson(jsonSmackExits, SmackExit[].class));
-        if (StreamEx.of(smackExits).findAny(d -> d.getItemUsed() == null).isPresent()) {
-          throw new JsonSyntaxException("");
-        }
-      } catch (JsonSyntaxException e) {
-        throw new InvalidArgumentException(
-            new String[] {
-              "Smack exits in room '" + room.getRoomName() + "' cannot be parsed properly."
-            });
+  /**
+   * Reads a top level array of rooms one room at a time, into a Map of rooms and their exits
+   *
+   * @param reader the reader, positioned before the rooms array
+   * @return a map between rooms and their exits
+   * @throws IOException If the json cannot be read
+   * @throws InvalidArgumentException If the json is not valid json, does not have a top level
+   *     array, or cannot be parsed properly as a map
+   */
+  private static Map<Room, List<RoomExit>> readRooms(JsonReader reader)
+      throws IOException, InvalidArgumentException {
+    // Holds a mapping between each room and its potential ways of exiting the room, these will be
+    // edges in the graph after the vertices (rooms) are added. Rooms keep the order of the file so
+    // room ids are the same every time the map is loaded
+    Map<Room, List<RoomExit>> roomToExitsMap = new LinkedHashMap<>();
+    try {
+      RoomReader roomReader = new RoomReader(reader, new StringPool());
+      reader.beginArray();
+      while (reader.hasNext()) {
+        addRoom(roomToExitsMap, roomReader.readRoom());
       }
-      // Check for no duplicate smack exits
-      if (StreamEx.of(smackExits).distinct(SmackExit::getItemUsed).count() < smackExits.size()) {
-        throw new InvalidArgumentException(
-            new String[] {
-              "Items within 'smackExits' are not unique for room '" + room.getRoomName() + "'"
-            });
+      reader.endArray();
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new MalformedJsonException("Content after the rooms array");
       }
+    } catch (IllegalStateException
+        | JsonIOException
+        | JsonSyntaxException
+        | MalformedJsonException
+        | EOFException e) {
+      throw new InvalidArgumentException(
+          new String[] {
+            "Passed file cannot be parsed as a JSON file or the top level object is not an array."
+          });
+    }
+    checkStartingRoom(roomToExitsMap);
+    return roomToExitsMap;
+  }
 
-      exitsFromRoom.addAll(dirExits);
-      exitsFromRoom.addAll(smackExits);
-      roomToExitsMap.put(room, exitsFromRoom);
-
-      if (room.getRoomName().equals("StartingRoom")) {
-        startingRoomIsDefinedInJSON = true;
-      }
+  /**
+   * Adds a parsed room to the map of rooms and their exits
+   *
+   * @param roomToExitsMap the rooms parsed so far
+   * @param roomAndExits the room to add and its exits
+   * @throws InvalidArgumentException If a room with the same name has already been added
+   */
+  private static void addRoom(
+      Map<Room, List<RoomExit>> roomToExitsMap, Pair<Room, List<RoomExit>> roomAndExits)
+      throws InvalidArgumentException {
+    Room room = roomAndExits.getFirst();
+    // Check for room name uniqueness, rooms are equal when their names are
+    if (roomToExitsMap.containsKey(room)) {
+      throw new InvalidArgumentException(
+          new String[] {"Duplicate room name in JSON file of '" + room.getRoomName() + "'"});
     }
+    roomToExitsMap.put(room, roomAndExits.getSecond());
+  }
 
-    if (!startingRoomIsDefinedInJSON) {
+  private static void checkStartingRoom(Map<Room, List<RoomExit>> roomToExitsMap)
+      throws InvalidArgumentException {
+    if (!roomToExitsMap.containsKey(new Room("StartingRoom", "", Collections.emptySet()))) {
       throw new InvalidArgumentException(
           new String[] {
             "The json map does not have a room titled 'StartingRoom', cannot create game map."
           });
     }
-    return roomToExitsMap;
   }
 
   /**
@@ -232,9 +225,7 @@ public class GameMap {
    * @return The starting room
    */
   public Room getStartingRoom() {
-    return StreamEx.of(roomGraph.vertexSet())
-        .findFirst(r -> r.getRoomName().equals("StartingRoom"))
-        .get();
+    return startingRoom;
   }
 
   /**
@@ -251,35 +242,73 @@ public class GameMap {
     }
   }
 
-  /**
-   * Gets all the potential ways a user can leave the room by typing "go <direction>"
-   *
-   * @param r the room to check
-   * @return A set of DirectionExits the user can use
-   */
-  public Set<DirectionExit> getDirectionExitsForRoom(Room r) {
-    return StreamEx.of(getExitsForRoom(r)).select(DirectionExit.class).collect(Collectors.toSet());
+  public int getRoomCount() {
+    return rooms.size();
   }
-  /**
-   * Gets all the potential ways a user can leave the room by typing "smack"
-   *
-   * @param r the room to check
-   * @return A set of SmackExits the user can use
-   */
-  public Set<SmackExit> getSmackExitsForRoom(Room r) {
-    return StreamEx.of(getExitsForRoom(r)).select(SmackExit.class).collect(Collectors.toSet());
+
+  public Room getRoom(int roomId) {
+    return rooms.get(roomId);
+  }
+
+  public int getRoomId(Room r) {
+    return roomIds.getOrDefault(r, -1);
   }
 
   /**
-   * Gets the default smack exit for a room, this is defined in the json file as a smackExit with
-   * "default" for the item field
+   * Estimates the heap retained by this map. The graph part follows the layout of jgrapht's
+   * DirectedPseudograph: a linked map from each room to lists of its outgoing and incoming exits,
+   * a map from each pair of connected rooms to the exits between them, and a linked map from each
+   * exit to its endpoints
    *
-   * @param r the room to check
-   * @return An optional SmackExit, empty if the room does not define a default smack interaction
+   * @return the estimated footprint of the map
    */
-  public Optional<SmackExit> getDefaultSmackExitForRoom(Room r) {
-    return getSmackExitsForRoom(r).stream()
-        .filter(v -> v.getItemUsed().equalsIgnoreCase("default"))
-        .findFirst();
+  public Footprint getFootprint() {
+    HeapEstimator heap = new HeapEstimator();
+    Set<String> items = new HashSet<>();
+    Map<Room, Integer> incoming = new HashMap<>();
+    Map<Pair<Room, Room>, Integer> connections = new HashMap<>();
+    long graph = 0;
+    long text = 0;
+    for (RoomExit exit : roomGraph.edgeSet()) {
+      Room target = roomGraph.getEdgeTarget(exit);
+      incoming.merge(target, 1, Integer::sum);
+      connections.merge(Pair.of(roomGraph.getEdgeSource(exit), target), 1, Integer::sum);
+      text += heap.string(exit.getDescription()) + heap.string(exit.getNextRoom());
+      if (exit instanceof DirectionExit) {
+        graph += HeapEstimator.object(4, 0);
+        text += heap.string(((DirectionExit) exit).getOutcomeText());
+      } else {
+        graph += HeapEstimator.object(3, 0);
+        text += heap.string(((SmackExit) exit).getItemUsed());
+      }
+      // The exit's endpoints, and its entry in the graph's exit map
+      graph += HeapEstimator.object(2, 0);
+    }
+    int exitCount = roomGraph.edgeSet().size();
+    graph += HeapEstimator.hashMap(exitCount, true);
+    graph += HeapEstimator.hashMap(connections.size(), false);
+    for (int exits : connections.values()) {
+      // The pair of rooms and the list of exits between them
+      graph += HeapEstimator.object(2, 0) + HeapEstimator.growingArrayList(exits);
+    }
+
+    long itemSets = 0;
+    graph += HeapEstimator.hashMap(rooms.size(), true);
+    for (Room room : rooms) {
+      // The room, and its container of outgoing and incoming exit lists in the graph
+      graph += HeapEstimator.object(3, 0) + HeapEstimator.object(2, 0);
+      graph += HeapEstimator.growingArrayList(roomGraph.outgoingEdgesOf(room).size());
+      graph += HeapEstimator.growingArrayList(incoming.getOrDefault(room, 0));
+      text += heap.string(room.getRoomName()) + heap.string(room.getDescription());
+      itemSets += HeapEstimator.hashSet(room.getItems().size());
+      for (String item : room.getItems()) {
+        text += heap.string(item);
+        items.add(item);
+      }
+    }
+    // The room list and the id of each room, ids below 128 are cached Integers
+    graph += HeapEstimator.arrayList(rooms.size()) + HeapEstimator.hashMap(rooms.size(), false);
+    graph += Math.max(0, rooms.size() - 128) * HeapEstimator.BOXED_INTEGER;
+    return new Footprint(rooms.size(), exitCount, items.size(), graph, text, itemSets, 0);
   }
 }
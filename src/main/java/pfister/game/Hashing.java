@@ -0,0 +1,43 @@
+package pfister.game;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The 64 bit hash used wherever this project hashes keys itself: placing sessions on the cluster
+ * ring, indexing the analytics sketches and fingerprinting examine cache keys
+ */
+public final class Hashing {
+  private Hashing() {}
+
+  /**
+   * Hashes a string to 64 bits. Uses FNV-1a over the UTF-8 bytes, followed by mix64 so that similar
+   * strings such as "player1" and "player2" are spread apart
+   *
+   * @param s the string to hash
+   * @return the hash
+   */
+  public static long hash64(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= 0x100000001b3L;
+    }
+    return mix64(h);
+  }
+
+  /**
+   * Spreads the bits of a hash over a long using the finaliser of MurmurHash3, so every output bit
+   * depends on every input bit, which HyperLogLog relies on
+   *
+   * @param h the hash to mix
+   * @return the mixed hash
+   */
+  public static long mix64(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
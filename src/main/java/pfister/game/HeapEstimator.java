@@ -0,0 +1,157 @@
+package pfister.game;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Estimates the heap retained by the objects making up a map or a game, from the layout a 64 bit
+ * JVM with compressed references gives them. The estimates do not walk the heap, they add up the
+ * sizes of the objects the data structures are known to create, so they are cheap enough to take
+ * on a live server. Strings are only counted the first time this estimator sees them, since
+ * interned text is shared across the whole map
+ *
+ * <p>Strings are sized for the running JVM. On Java 8, which this project targets, a String is a
+ * char array of two bytes per character plus a cached hash. From Java 9, Latin-1 text is stored in
+ * a byte array of one byte per character instead
+ */
+final class HeapEstimator {
+  static final int OBJECT_HEADER = 12;
+  static final int ARRAY_HEADER = 16;
+  static final int REFERENCE = 4;
+
+  /** A HashMap: table, keySet, values, entrySet, size, modCount, threshold, loadFactor */
+  private static final long HASH_MAP = object(4, 16);
+  /** A LinkedHashMap adds head, tail and accessOrder to the HashMap */
+  private static final long LINKED_HASH_MAP = object(6, 17);
+  /** A HashMap.Node: hash, key, value, next */
+  private static final long HASH_MAP_NODE = object(3, 4);
+  /** A LinkedHashMap.Entry adds before and after links to the HashMap.Node */
+  private static final long LINKED_HASH_MAP_ENTRY = object(5, 4);
+  /** An ArrayList: elementData, size, modCount */
+  private static final long ARRAY_LIST = object(1, 8);
+  /** A boxed Integer or Long outside the small value cache */
+  static final long BOXED_INTEGER = object(0, 4);
+
+  static final long BOXED_LONG = object(0, 8);
+
+  /** Whether the running JVM stores Latin-1 strings in a byte per character */
+  private static final boolean COMPACT_STRINGS =
+      !System.getProperty("java.specification.version").startsWith("1.");
+
+  private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * Gets the size of an object, rounded up to the 8 byte alignment of the heap
+   *
+   * @param references the number of reference fields
+   * @param primitiveBytes the total size of the primitive fields
+   * @return the size of the object in bytes
+   */
+  static long object(int references, int primitiveBytes) {
+    return align(OBJECT_HEADER + (long) references * REFERENCE + primitiveBytes);
+  }
+
+  /**
+   * Gets the size of an array
+   *
+   * @param length the length of the array
+   * @param elementBytes the size of each element, REFERENCE for object arrays
+   * @return the size of the array in bytes
+   */
+  static long array(int length, int elementBytes) {
+    return align(ARRAY_HEADER + (long) length * elementBytes);
+  }
+
+  /**
+   * Gets the size of a HashMap, or the HashMap backing a HashSet, not counting keys and values
+   *
+   * @param size the number of entries
+   * @param linked whether the map is a LinkedHashMap
+   * @return the size of the map in bytes
+   */
+  static long hashMap(int size, boolean linked) {
+    long bytes = linked ? LINKED_HASH_MAP : HASH_MAP;
+    if (size == 0) {
+      // The table is only allocated once the first entry is added
+      return bytes;
+    }
+    return bytes
+        + array(tableSize(size), REFERENCE)
+        + (long) size * (linked ? LINKED_HASH_MAP_ENTRY : HASH_MAP_NODE);
+  }
+
+  /**
+   * Gets the size of a HashSet, not counting its elements
+   *
+   * @param size the number of elements
+   * @return the size of the set in bytes
+   */
+  static long hashSet(int size) {
+    return object(1, 0) + hashMap(size, false);
+  }
+
+  /**
+   * Gets the size of an ArrayList filled to its capacity, not counting its elements
+   *
+   * @param size the number of elements
+   * @return the size of the list in bytes
+   */
+  static long arrayList(int size) {
+    return ARRAY_LIST + array(size, REFERENCE);
+  }
+
+  /**
+   * Gets the size of an ArrayList made with the default constructor and then added to, not counting
+   * its elements. Its array starts at 10 elements on the first add and grows by half each time it
+   * fills up
+   *
+   * @param size the number of elements
+   * @return the size of the list in bytes
+   */
+  static long growingArrayList(int size) {
+    if (size == 0) {
+      // Empty lists share one empty array
+      return ARRAY_LIST;
+    }
+    int capacity = 10;
+    while (capacity < size) {
+      capacity += capacity >> 1;
+    }
+    return ARRAY_LIST + array(capacity, REFERENCE);
+  }
+
+  /** The table length a HashMap grows to for a number of entries, at a 0.75 load factor */
+  private static int tableSize(int size) {
+    int needed = (int) Math.ceil(size / 0.75);
+    int table = Math.max(16, Integer.highestOneBit(needed));
+    return table < needed ? table << 1 : table;
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  /**
+   * Gets the size of a string and its character array, if this estimator has not seen the same
+   * String object before
+   *
+   * @param s the string, may be null
+   * @return the size of the string in bytes, 0 if it is null or was already counted
+   */
+  long string(String s) {
+    if (s == null || !seen.add(s)) {
+      return 0;
+    }
+    if (!COMPACT_STRINGS) {
+      // value and hash
+      return object(1, 4) + array(s.length(), Character.BYTES);
+    }
+    boolean latin1 = true;
+    for (int i = 0; i < s.length() && latin1; i++) {
+      latin1 = s.charAt(i) < 256;
+    }
+    // value, hash, coder, and hashIsZero from Java 13
+    return object(1, 6) + array(s.length(), latin1 ? 1 : 2);
+  }
+}
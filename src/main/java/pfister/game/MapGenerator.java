@@ -0,0 +1,193 @@
+package pfister.game;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates random json maps for testing how the game scales with map size. The same seed and
+ * settings always produce the same map. Rooms are written out one at a time as they are generated,
+ * so the memory used does not grow with the size of the map
+ *
+ * <p>Room 0 is the "StartingRoom" and the last room is "win". Every room has a direction exit to
+ * the room after it, so the win room can always be reached, and the rest of its direction exits
+ * lead to random rooms. Items are numbered so they are unique across the map, and smack exits may
+ * use any item that was placed in an earlier room
+ */
+public final class MapGenerator {
+  public static final int MIN_ROOMS = 10;
+  public static final int MAX_ROOMS = 10_000_000;
+
+  private static final String[] ROOM_DESCRIPTIONS = {
+    "You are in a dark room. You are angry.",
+    "You are standing in a hallway.",
+    "A cramped storage closet, it smells of bleach.",
+    "A long corridor lit by flickering lights.",
+    "An empty office, papers are scattered everywhere.",
+    "A cafeteria with overturned tables.",
+    "A maintenance room full of humming machines."
+  };
+  private static final String[] EXIT_DESCRIPTIONS = {
+    "A hallway.", "Your prison cell.", "A heavy metal door.", "A narrow passage.", "A ladder."
+  };
+  private static final String[] SMACK_DESCRIPTIONS = {
+    "You smack the wall with your fist. The wall cowers at your might.",
+    "You smack the door. It does not budge.",
+    "You flail at the air, something gives way."
+  };
+  private static final String[] OUTCOME_TEXTS = {
+    "", "", "", "You squeeze through.", "The door slams shut behind you."
+  };
+
+  private final long seed;
+  private final int roomCount;
+  private final int branchingFactor;
+  private final double itemDensity;
+
+  /**
+   * Sets up a map generator, nothing is generated until generate is called
+   *
+   * @param seed the seed for the random number generator
+   * @param roomCount the number of rooms in the map, including the starting and win rooms
+   * @param branchingFactor the number of direction exits in each room, between 1 and 4
+   * @param itemDensity the average number of items placed in each room
+   */
+  public MapGenerator(long seed, int roomCount, int branchingFactor, double itemDensity) {
+    if (roomCount < MIN_ROOMS || roomCount > MAX_ROOMS) {
+      throw new IllegalArgumentException(
+          "Maps must have between " + MIN_ROOMS + " and " + MAX_ROOMS + " rooms.");
+    }
+    if (branchingFactor < 1 || branchingFactor > Direction.values().length) {
+      throw new IllegalArgumentException(
+          "Branching factor must be between 1 and " + Direction.values().length + ".");
+    }
+    if (itemDensity < 0) {
+      throw new IllegalArgumentException("Item density cannot be negative.");
+    }
+    this.seed = seed;
+    this.roomCount = roomCount;
+    this.branchingFactor = branchingFactor;
+    this.itemDensity = itemDensity;
+  }
+
+  /**
+   * Generates the map and writes it to a file
+   *
+   * @param jsonPath the path of the file to write
+   * @throws IOException If the file cannot be written
+   */
+  public void generate(String jsonPath) throws IOException {
+    try (Writer out = Files.newBufferedWriter(Paths.get(jsonPath), StandardCharsets.UTF_8)) {
+      generate(out);
+    }
+  }
+
+  /**
+   * Generates the map and writes it as json, the writer is not closed
+   *
+   * @param out the writer to write the map to
+   * @throws IOException If the map cannot be written
+   */
+  public void generate(Writer out) throws IOException {
+    Random random = new Random(seed);
+    JsonWriter json = new JsonWriter(out instanceof BufferedWriter ? out : new BufferedWriter(out));
+    json.setIndent("  ");
+    json.beginArray();
+    int itemsPlaced = 0;
+    for (int room = 0; room < roomCount; room++) {
+      json.beginObject();
+      json.name("roomName").value(roomName(room));
+      if (room == roomCount - 1) {
+        json.name("description").value("You escaped!");
+        json.name("items").beginArray().endArray();
+        json.name("directionExits").beginArray().endArray();
+        json.name("smackExits").beginArray().endArray();
+        json.endObject();
+        continue;
+      }
+      json.name("description").value(pick(random, ROOM_DESCRIPTIONS));
+
+      json.name("items").beginArray();
+      int items = (int) itemDensity + (random.nextDouble() < itemDensity % 1 ? 1 : 0);
+      for (int i = 0; i < items; i++) {
+        json.value("item" + itemsPlaced++);
+      }
+      json.endArray();
+
+      json.name("directionExits").beginArray();
+      Direction[] directions = shuffledDirections(random);
+      for (int i = 0; i < branchingFactor; i++) {
+        // The first exit always leads onward, so there is a path from every room to the win room
+        int target = i == 0 ? room + 1 : random.nextInt(roomCount);
+        json.beginObject();
+        json.name("direction").value(directions[i].toString());
+        json.name("nextRoom").value(roomName(target));
+        json.name("description").value(pick(random, EXIT_DESCRIPTIONS));
+        json.name("outcomeText").value(pick(random, OUTCOME_TEXTS));
+        json.endObject();
+      }
+      json.endArray();
+
+      json.name("smackExits").beginArray();
+      json.beginObject();
+      json.name("item").value("default");
+      json.name("nextRoom").value("");
+      json.name("description").value(pick(random, SMACK_DESCRIPTIONS));
+      json.endObject();
+      if (itemsPlaced > 0 && random.nextInt(4) == 0) {
+        json.beginObject();
+        json.name("item").value("item" + random.nextInt(itemsPlaced));
+        json.name("nextRoom").value(roomName(random.nextInt(roomCount)));
+        json.name("description").value(pick(random, SMACK_DESCRIPTIONS));
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+    }
+    json.endArray();
+    json.flush();
+  }
+
+  private String roomName(int room) {
+    if (room == 0) return "StartingRoom";
+    if (room == roomCount - 1) return "win";
+    return "Room" + room;
+  }
+
+  private static String pick(Random random, String[] choices) {
+    return choices[random.nextInt(choices.length)];
+  }
+
+  private static Direction[] shuffledDirections(Random random) {
+    Direction[] directions = Direction.values();
+    for (int i = directions.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      Direction swap = directions[i];
+      directions[i] = directions[j];
+      directions[j] = swap;
+    }
+    return directions;
+  }
+
+  /**
+   * Writes a generated map to a file. Arguments are: output path, room count, and optionally the
+   * seed, branching factor and item density
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println(
+          "Usage: MapGenerator <output path> <rooms> [seed] [branching factor] [item density]");
+      return;
+    }
+    int rooms = Integer.parseInt(args[1]);
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 126;
+    int branchingFactor = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+    double itemDensity = args.length > 4 ? Double.parseDouble(args[4]) : 0.25;
+    new MapGenerator(seed, rooms, branchingFactor, itemDensity).generate(args[0]);
+  }
+}
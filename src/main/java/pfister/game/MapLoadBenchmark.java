@@ -0,0 +1,79 @@
+package pfister.game;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time taken to load a generated map by streaming the file through RoomReader, as
+ * GameMap(String) does, against first building a Gson tree of the whole file and reading the rooms
+ * from the tree, as GameMap(JsonArray) does. Each path is warmed up before it is timed, and the two
+ * paths alternate so neither one always runs on a warmer JVM
+ */
+public final class MapLoadBenchmark {
+  private MapLoadBenchmark() {}
+
+  /**
+   * Runs the benchmark. Arguments are optionally the room count, the number of timed loads of each
+   * path, and the seed of the generated map
+   */
+  public static void main(String[] args) throws IOException, InvalidArgumentException {
+    int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 126;
+
+    File file = File.createTempFile("benchmark", ".json");
+    file.deleteOnExit();
+    String path = file.getPath();
+    new MapGenerator(seed, rooms, 3, 0.25).generate(path);
+    System.out.println("Generated " + rooms + " rooms, " + file.length() / 1024 + "KB");
+
+    for (int warmup = 0; warmup < 2; warmup++) {
+      loadStreaming(path);
+      loadGson(path);
+    }
+    long streamingNanos = 0;
+    long gsonNanos = 0;
+    for (int run = 0; run < runs; run++) {
+      streamingNanos += loadStreaming(path);
+      gsonNanos += loadGson(path);
+    }
+    double streamingMillis = (double) streamingNanos / runs / TimeUnit.MILLISECONDS.toNanos(1);
+    double gsonMillis = (double) gsonNanos / runs / TimeUnit.MILLISECONDS.toNanos(1);
+    System.out.printf("Streaming RoomReader: %.1f ms per load%n", streamingMillis);
+    System.out.printf("Gson tree then RoomReader: %.1f ms per load%n", gsonMillis);
+    System.out.printf("Speedup: %.2fx%n", gsonMillis / streamingMillis);
+  }
+
+  private static long loadStreaming(String path) throws IOException, InvalidArgumentException {
+    long start = System.nanoTime();
+    GameMap map = new GameMap(path);
+    long elapsed = System.nanoTime() - start;
+    check(map);
+    return elapsed;
+  }
+
+  private static long loadGson(String path) throws IOException, InvalidArgumentException {
+    long start = System.nanoTime();
+    JsonArray jsonRooms;
+    try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+      jsonRooms = JsonParser.parseReader(reader).getAsJsonArray();
+    }
+    GameMap map = new GameMap(jsonRooms);
+    long elapsed = System.nanoTime() - start;
+    check(map);
+    return elapsed;
+  }
+
+  /** Uses the loaded map, so the load cannot be optimised away */
+  private static void check(GameMap map) {
+    if (map.getStartingRoom() == null) {
+      throw new IllegalStateException("Loaded map has no starting room.");
+    }
+  }
+}
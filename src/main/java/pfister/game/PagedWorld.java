@@ -0,0 +1,333 @@
+package pfister.game;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A world loaded from the paged format written by PagedWorldWriter, for maps too large to hold in
+ * memory as a GameMap. Only the room table (room names, items and exits) is kept resident. Room
+ * descriptions and exit text are read on demand from a memory mapped text file, one mapping per
+ * region, and kept in a bounded least recently used cache. Whenever an exit leads into a room, the
+ * text of the rooms that room's direction exits lead to is loaded into the cache in the background,
+ * since the player is likely to go there next. That is each neighbour's description and the
+ * descriptions and outcomes of its exits, which are all read when the player enters it
+ *
+ * <p>Rooms and exits are built fresh each time they are requested, so the rooms handed out by this
+ * class are never shared between games
+ */
+public class PagedWorld implements WorldMap, Closeable {
+  /** The name of the room table file within a paged world directory */
+  public static final String INDEX_FILE = "rooms.idx";
+  /** The name of the text file within a paged world directory */
+  public static final String TEXT_FILE = "text.dat";
+  /** The number of pieces of text kept in the cache when no size is given */
+  public static final int DEFAULT_CACHE_SIZE = 4096;
+
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  private final RoomTable table;
+  private final Map<String, Integer> roomIds;
+  private final FileChannel textChannel;
+  /**
+   * Each region of the text file, mapped the first time text from it is needed. Read without a
+   * lock, since once mapped a region never changes
+   */
+  private final AtomicReferenceArray<MappedByteBuffer> regions;
+  /** Text already read, keyed by its offset in the text file, in least recently used order */
+  private final LinkedHashMap<Long, String> textCache;
+  /** Rooms whose neighbours are being prefetched, so no room is prefetched twice at once */
+  private final Set<Integer> prefetching = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Opens a paged world, using the default cache size
+   *
+   * @param directory the directory the paged world was written to
+   * @throws IOException If the paged world cannot be read
+   */
+  public PagedWorld(String directory) throws IOException {
+    this(directory, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Opens a paged world. The room table is read into memory, the text file is left on disk
+   *
+   * @param directory the directory the paged world was written to
+   * @param cacheSize the maximum number of pieces of text to keep in memory
+   * @throws IOException If the paged world cannot be read
+   */
+  public PagedWorld(String directory, int cacheSize) throws IOException {
+    Path directoryPath = Paths.get(directory);
+    try (DataInputStream index =
+        new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(directoryPath.resolve(INDEX_FILE))))) {
+      table = RoomTable.read(index, new StringPool());
+    }
+    roomIds = new HashMap<>(table.roomCount * 2);
+    for (int room = 0; room < table.roomCount; room++) {
+      roomIds.put(table.roomNames[room], room);
+    }
+    textChannel = FileChannel.open(directoryPath.resolve(TEXT_FILE), StandardOpenOption.READ);
+    regions = new AtomicReferenceArray<>(table.regionCount);
+    textCache =
+        new LinkedHashMap<Long, String>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > cacheSize;
+          }
+        };
+  }
+
+  @Override
+  public int getRoomCount() {
+    return table.roomCount;
+  }
+
+  @Override
+  public int getRoomId(Room r) {
+    return roomIds.getOrDefault(r.getRoomName(), -1);
+  }
+
+  @Override
+  public Room getStartingRoom() {
+    return getRoom(table.startingRoom);
+  }
+
+  @Override
+  public Optional<Room> getNextRoom(RoomExit e) {
+    Integer target = roomIds.get(e.getNextRoom());
+    if (target == null) {
+      return Optional.empty();
+    }
+    prefetchNeighbours(target);
+    return Optional.of(getRoom(target));
+  }
+
+  /**
+   * Loads the text of the rooms a room's direction exits lead to into the cache, on the common fork
+   * join pool so the player moving into the room never waits for it
+   *
+   * @param room the room being entered
+   */
+  private void prefetchNeighbours(int room) {
+    if (!prefetching.add(room)) return;
+    CompletableFuture.runAsync(
+        () -> {
+          try {
+            for (int exit = table.exitStart[room]; exit < table.exitStart[room + 1]; exit++) {
+              if (table.exitDirection[exit] != RoomTable.SMACK_EXIT) {
+                prefetchRoom(table.exitTarget[exit]);
+              }
+            }
+          } finally {
+            prefetching.remove(room);
+          }
+        });
+  }
+
+  /**
+   * Reads all the text entering a room needs into the cache: its description, and the description
+   * and outcome of each of its exits
+   *
+   * @param room the room to read the text of
+   */
+  private void prefetchRoom(int room) {
+    int region = table.regionOf(room);
+    readText(region, table.roomText[room]);
+    for (int exit = table.exitStart[room]; exit < table.exitStart[room + 1]; exit++) {
+      readText(region, table.exitText[exit]);
+      readText(region, table.exitOutcome[exit]);
+    }
+  }
+
+  @Override
+  public Set<RoomExit> getExitsForRoom(Room r) {
+    Integer room = roomIds.get(r.getRoomName());
+    if (room == null) return Collections.emptySet();
+    int region = table.regionOf(room);
+    Set<RoomExit> exits = new LinkedHashSet<>();
+    for (int exit = table.exitStart[room]; exit < table.exitStart[room + 1]; exit++) {
+      int target = table.exitTarget[exit];
+      String description = readText(region, table.exitText[exit]);
+      if (table.exitDirection[exit] == RoomTable.SMACK_EXIT) {
+        exits.add(new SmackExit(description, table.roomNames[target], table.exitItem[exit]));
+        continue;
+      }
+      exits.add(
+          new DirectionExit(
+              description,
+              table.roomNames[target],
+              DIRECTIONS[table.exitDirection[exit]],
+              readText(region, table.exitOutcome[exit])));
+    }
+    return exits;
+  }
+
+  /**
+   * Builds the room with the given id, reading its description through the cache
+   *
+   * @param room the id of the room
+   * @return a new Room object for the room
+   */
+  @Override
+  public Room getRoom(int room) {
+    String description = readText(table.regionOf(room), table.roomText[room]);
+    return new Room(
+        table.roomNames[room],
+        description,
+        new LinkedHashSet<>(Arrays.asList(table.roomItems[room])));
+  }
+
+  /**
+   * Gets a room's initial items straight from the room table, without reading its description
+   *
+   * @param roomId the id of the room
+   * @return the room's initial items
+   */
+  @Override
+  public Collection<String> getInitialItems(int roomId) {
+    return Collections.unmodifiableList(Arrays.asList(table.roomItems[roomId]));
+  }
+
+  /**
+   * Reads a piece of text from the text file, returning the cached copy if there is one
+   *
+   * @param region the region the text belongs to
+   * @param textRef the reference to the text within its region
+   * @return the text, or null if the reference is to no text
+   */
+  private String readText(int region, long textRef) {
+    if (textRef == RoomTable.NO_TEXT) {
+      return null;
+    }
+    int offset = RoomTable.textOffset(textRef);
+    Long key = table.regionOffsets[region] + offset;
+    synchronized (textCache) {
+      String cached = textCache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    // Decode outside the lock, the worst case is two threads decoding the same text at once
+    ByteBuffer buffer = mapRegion(region).duplicate();
+    buffer.position(offset);
+    byte[] bytes = new byte[RoomTable.textLength(textRef)];
+    buffer.get(bytes);
+    String text = new String(bytes, StandardCharsets.UTF_8);
+    synchronized (textCache) {
+      textCache.put(key, text);
+    }
+    return text;
+  }
+
+  /**
+   * Maps a region of the text file into memory, if it is not mapped already. Only mapping takes a
+   * lock, a region already mapped is returned straight away
+   *
+   * @param region the region to map
+   * @return the mapped region
+   */
+  private MappedByteBuffer mapRegion(int region) {
+    MappedByteBuffer mapped = regions.get(region);
+    if (mapped != null) {
+      return mapped;
+    }
+    synchronized (regions) {
+      mapped = regions.get(region);
+      if (mapped == null) {
+        long start = table.regionOffsets[region];
+        try {
+          mapped =
+              textChannel.map(MapMode.READ_ONLY, start, table.regionOffsets[region + 1] - start);
+        } catch (IOException e) {
+          throw new IllegalStateException(
+              "Could not map region " + region + " of the world text.", e);
+        }
+        regions.set(region, mapped);
+      }
+      return mapped;
+    }
+  }
+
+  /**
+   * Estimates the heap retained by this world. Only the room table, the room id index and the text
+   * cache live on the heap, the mapped regions of the text file are counted by the operating system
+   * as page cache and are left out
+   *
+   * @return the estimated footprint of the world
+   */
+  @Override
+  public Footprint getFootprint() {
+    HeapEstimator heap = new HeapEstimator();
+    Set<String> items = new HashSet<>();
+    long graph =
+        HeapEstimator.array(table.roomNames.length, HeapEstimator.REFERENCE)
+            + HeapEstimator.array(table.roomText.length, Long.BYTES)
+            + HeapEstimator.array(table.exitStart.length, Integer.BYTES)
+            + HeapEstimator.array(table.exitDirection.length, Byte.BYTES)
+            + HeapEstimator.array(table.exitItem.length, HeapEstimator.REFERENCE)
+            + HeapEstimator.array(table.exitTarget.length, Integer.BYTES)
+            + HeapEstimator.array(table.exitText.length, Long.BYTES)
+            + HeapEstimator.array(table.exitOutcome.length, Long.BYTES)
+            + HeapEstimator.array(table.regionOffsets.length, Long.BYTES)
+            + HeapEstimator.array(regions.length(), HeapEstimator.REFERENCE)
+            + HeapEstimator.hashMap(roomIds.size(), false)
+            + Math.max(0, roomIds.size() - 128) * HeapEstimator.BOXED_INTEGER;
+    long text = 0;
+    long itemSets = HeapEstimator.array(table.roomItems.length, HeapEstimator.REFERENCE);
+    for (int room = 0; room < table.roomCount; room++) {
+      text += heap.string(table.roomNames[room]);
+      itemSets += HeapEstimator.array(table.roomItems[room].length, HeapEstimator.REFERENCE);
+      for (String item : table.roomItems[room]) {
+        text += heap.string(item);
+        items.add(item);
+      }
+    }
+    for (int exit = 0; exit < table.exitCount; exit++) {
+      text += heap.string(table.exitItem[exit]);
+    }
+    synchronized (textCache) {
+      text +=
+          HeapEstimator.hashMap(textCache.size(), true)
+              + textCache.size() * HeapEstimator.BOXED_LONG;
+      for (String cached : textCache.values()) {
+        text += heap.string(cached);
+      }
+    }
+    return new Footprint(table.roomCount, table.exitCount, items.size(), graph, text, itemSets, 0);
+  }
+
+  /**
+   * Closes the text file. Regions which are already mapped stay readable until they are garbage
+   * collected
+   *
+   * @throws IOException If the text file could not be closed
+   */
+  @Override
+  public void close() throws IOException {
+    textChannel.close();
+  }
+}
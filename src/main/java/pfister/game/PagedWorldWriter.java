@@ -0,0 +1,217 @@
+package pfister.game;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jgrapht.alg.util.Pair;
+
+/**
+ * Converts a json map into the paged world format read by PagedWorld. The json file is streamed one
+ * room at a time, so only the room table is ever held in memory while converting
+ */
+public final class PagedWorldWriter {
+  /** The number of rooms whose text is grouped together in one region of the text file */
+  public static final int DEFAULT_ROOMS_PER_REGION = 4096;
+
+  private PagedWorldWriter() {}
+
+  /**
+   * Converts a json map into a paged world, using the default region size
+   *
+   * @param jsonPath the path to the JSON file
+   * @param directory the directory to write the paged world to, created if it does not exist
+   * @throws IOException If the json file cannot be read, or the paged world cannot be written
+   * @throws InvalidArgumentException If the json file cannot be validly parsed as a game map
+   */
+  public static void write(String jsonPath, String directory)
+      throws IOException, InvalidArgumentException {
+    write(jsonPath, directory, DEFAULT_ROOMS_PER_REGION);
+  }
+
+  /**
+   * Converts a json map into a paged world. The map is checked the same way GameMap checks it
+   *
+   * @param jsonPath the path to the JSON file
+   * @param directory the directory to write the paged world to, created if it does not exist
+   * @param roomsPerRegion the number of rooms whose text is grouped together in one region
+   * @throws IOException If the json file cannot be read, or the paged world cannot be written
+   * @throws InvalidArgumentException If the json file cannot be validly parsed as a game map
+   */
+  public static void write(String jsonPath, String directory, int roomsPerRegion)
+      throws IOException, InvalidArgumentException {
+    if (roomsPerRegion < 1) {
+      throw new IllegalArgumentException("Regions must hold at least one room.");
+    }
+    Path directoryPath = Paths.get(directory);
+    Files.createDirectories(directoryPath);
+
+    RoomTable table = new RoomTable(roomsPerRegion);
+    // Exits may lead to rooms further along in the file, so their targets are kept as names until
+    // every room has been read
+    Map<String, Integer> roomIds = new HashMap<>();
+    List<String> exitTargets = new ArrayList<>();
+    long textLength;
+    try (JsonReader reader =
+            new JsonReader(Files.newBufferedReader(Paths.get(jsonPath), StandardCharsets.UTF_8));
+        TextWriter text =
+            new TextWriter(
+                Files.newOutputStream(directoryPath.resolve(PagedWorld.TEXT_FILE)), table)) {
+      reader.setLenient(true);
+      // Only names are pooled, since the room table keeps them all. Descriptions and exit text are
+      // deduplicated per region as they are written, so the whole map's text is never held at once
+      RoomReader roomReader = new RoomReader(reader, new StringPool(), null);
+      try {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          addRoom(table, text, roomIds, exitTargets, roomReader.readRoom());
+        }
+        reader.endArray();
+      } catch (IllegalStateException
+          | JsonIOException
+          | JsonSyntaxException
+          | MalformedJsonException
+          | EOFException e) {
+        throw new InvalidArgumentException(
+            new String[] {
+              "Passed file cannot be parsed as a JSON file or the top level object is not an array."
+            });
+      }
+      textLength = text.written;
+    }
+
+    if (table.startingRoom < 0) {
+      throw new InvalidArgumentException(
+          new String[] {
+            "The json map does not have a room titled 'StartingRoom', cannot create game map."
+          });
+    }
+    for (int exit = 0; exit < table.exitCount; exit++) {
+      Integer target = roomIds.get(exitTargets.get(exit));
+      if (target == null) {
+        throw new InvalidArgumentException(
+            new String[] {
+              "Error parsing JSON map. Room '"
+                  + exitTargets.get(exit)
+                  + "' is not found in the game map."
+            });
+      }
+      table.exitTarget[exit] = target;
+    }
+
+    try (DataOutputStream index =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(directoryPath.resolve(PagedWorld.INDEX_FILE))))) {
+      table.write(index, textLength);
+    }
+  }
+
+  /**
+   * Adds a parsed room and its exits to the room table, writing out their text
+   *
+   * @throws InvalidArgumentException If the room's name has already been used
+   */
+  private static void addRoom(
+      RoomTable table,
+      TextWriter text,
+      Map<String, Integer> roomIds,
+      List<String> exitTargets,
+      Pair<Room, List<RoomExit>> roomAndExits)
+      throws IOException, InvalidArgumentException {
+    Room room = roomAndExits.getFirst();
+    if (roomIds.containsKey(room.getRoomName())) {
+      throw new InvalidArgumentException(
+          new String[] {"Duplicate room name in JSON file of '" + room.getRoomName() + "'"});
+    }
+    if (table.roomCount % table.roomsPerRegion == 0) {
+      table.startRegion(text.written);
+    }
+    long description = text.write(room.getDescription());
+    int id = table.addRoom(room.getRoomName(), description, room.getItems().toArray(new String[0]));
+    roomIds.put(room.getRoomName(), id);
+
+    for (RoomExit roomExit : roomAndExits.getSecond()) {
+      // If the nextRoom value is an empty string, then this exit leads back to the room itself
+      exitTargets.add(
+          roomExit.getNextRoom().isEmpty() ? room.getRoomName() : roomExit.getNextRoom());
+      long exitDescription = text.write(roomExit.getDescription());
+      if (roomExit instanceof DirectionExit) {
+        DirectionExit dirExit = (DirectionExit) roomExit;
+        table.addExit(
+            (byte) dirExit.getDirection().ordinal(),
+            null,
+            -1,
+            exitDescription,
+            text.write(dirExit.getOutcomeText()));
+      } else {
+        table.addExit(
+            RoomTable.SMACK_EXIT,
+            ((SmackExit) roomExit).getItemUsed(),
+            -1,
+            exitDescription,
+            RoomTable.NO_TEXT);
+      }
+    }
+  }
+
+  /**
+   * Appends UTF-8 text to the text file, handing out references relative to the current region.
+   * Text repeated within a region is only written once, every repeat gets the same reference
+   */
+  private static final class TextWriter implements AutoCloseable {
+    private final OutputStream out;
+    private final RoomTable table;
+    private final Map<String, Long> regionText = new HashMap<>();
+    private int region;
+    private long written;
+
+    private TextWriter(OutputStream out, RoomTable table) {
+      this.out = new BufferedOutputStream(out);
+      this.table = table;
+    }
+
+    private long write(String text) throws IOException {
+      if (text == null) {
+        return RoomTable.NO_TEXT;
+      }
+      if (region != table.regionCount) {
+        region = table.regionCount;
+        regionText.clear();
+      }
+      Long existing = regionText.get(text);
+      if (existing != null) {
+        return existing;
+      }
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      long offset = written - table.regionOffsets[table.regionCount - 1];
+      if (offset + bytes.length > Integer.MAX_VALUE) {
+        throw new IOException("Region text exceeds 2GB, use fewer rooms per region.");
+      }
+      out.write(bytes);
+      written += bytes.length;
+      long textRef = RoomTable.textRef((int) offset, bytes.length);
+      regionText.put(text, textRef);
+      return textRef;
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
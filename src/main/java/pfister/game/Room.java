@@ -2,9 +2,13 @@ package pfister.game;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 
-/** Holds information about the room a current player is in */
+/**
+ * Holds information about the room a current player is in. Rooms are identified by their name, two
+ * room objects with the same name are considered the same room even if their items differ
+ */
 public class Room {
 
   /**
@@ -71,4 +75,16 @@ public class Room {
   public boolean removeItem(String item) {
     return items.remove(item);
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof Room)) return false;
+    return Objects.equals(roomName, ((Room) o).roomName);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(roomName);
+  }
 }
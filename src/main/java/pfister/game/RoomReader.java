@@ -0,0 +1,309 @@
+package pfister.game;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.jgrapht.alg.util.Pair;
+
+/**
+ * Reads rooms and their exits straight from the tokens of a JsonReader, filling the constructors of
+ * Room, DirectionExit and SmackExit as each field is read. Nothing is bound by reflection and no
+ * JsonElement tree is built, so the text of a room goes from the parser to the pool without any
+ * intermediate objects. Every map is checked here, whether it is read from a file or from a tree
+ * already parsed by Gson, so the rules for a valid room only live in one place
+ */
+final class RoomReader {
+  private final JsonReader in;
+  private final StringPool namePool;
+  private final StringPool textPool;
+  /** Set when a value of the wrong type was skipped, cleared before reading each field */
+  private boolean wrongType;
+
+  /**
+   * Creates a reader for the rooms of a json map, pooling all of its text
+   *
+   * @param in the reader, positioned inside the top level rooms array
+   * @param pool the pool shared by every room of the map being loaded
+   */
+  RoomReader(JsonReader in, StringPool pool) {
+    this(in, pool, pool);
+  }
+
+  /**
+   * Creates a reader for the rooms of a json map, pooling names and descriptive text separately
+   *
+   * @param in the reader, positioned inside the top level rooms array
+   * @param namePool the pool for room names and item names
+   * @param textPool the pool for room descriptions and exit text, or null to not pool them
+   */
+  RoomReader(JsonReader in, StringPool namePool, StringPool textPool) {
+    this.in = in;
+    this.namePool = namePool;
+    this.textPool = textPool;
+  }
+
+  /**
+   * Reads the next room of the rooms array along with its exits
+   *
+   * @return a pair of the room and its exits
+   * @throws IOException If the json cannot be read or is malformed
+   * @throws InvalidArgumentException If the room or its exits cannot be parsed properly
+   */
+  Pair<Room, List<RoomExit>> readRoom() throws IOException, InvalidArgumentException {
+    if (in.peek() != JsonToken.BEGIN_OBJECT) {
+      // Not a room at all, read it as a tree only to quote it in the message
+      throw new InvalidArgumentException(
+          new String[] {
+            "Element in rooms array cannot be parsed as a valid room: "
+                + JsonParser.parseReader(in).toString()
+          });
+    }
+    String roomName = null;
+    String description = null;
+    Set<String> items = null;
+    List<DirectionExit> dirExits = null;
+    List<SmackExit> smackExits = null;
+    boolean roomWrongType = false;
+    boolean dirExitsWrongType = false;
+    boolean smackExitsWrongType = false;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      wrongType = false;
+      switch (in.nextName()) {
+        case "roomName":
+          roomName = readString(namePool);
+          roomWrongType |= wrongType;
+          break;
+        case "description":
+          description = readString(textPool);
+          roomWrongType |= wrongType;
+          break;
+        case "items":
+          items = readItems();
+          roomWrongType |= wrongType;
+          break;
+        case "directionExits":
+          if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            dirExits = null;
+            roomWrongType = true;
+            break;
+          }
+          dirExits = readDirectionExits();
+          dirExitsWrongType = wrongType;
+          break;
+        case "smackExits":
+          if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            smackExits = null;
+            roomWrongType = true;
+            break;
+          }
+          smackExits = readSmackExits();
+          smackExitsWrongType = wrongType;
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    if (roomWrongType) {
+      throw new InvalidArgumentException(
+          new String[] {
+            "Element in rooms array cannot be parsed as a valid room: " + describe(roomName)
+          });
+    }
+    if (roomName == null || items == null || description == null) {
+      throw new InvalidArgumentException(
+          new String[] {
+            "Room object must have defined fields of : roomName, items, description. Room: "
+                + describe(roomName)
+          });
+    }
+    if (dirExits == null || dirExitsWrongType) {
+      throw new InvalidArgumentException(
+          new String[] {"Direction exits in room '" + roomName + "' cannot be parsed properly."});
+    }
+    Set<Direction> directions = new HashSet<>();
+    for (DirectionExit dirExit : dirExits) {
+      if (!directions.add(dirExit.getDirection())) {
+        throw new InvalidArgumentException(
+            new String[] {
+              "Directions within 'directionExits' are not unique for room '" + roomName + "'"
+            });
+      }
+    }
+    if (smackExits == null || smackExitsWrongType) {
+      throw new InvalidArgumentException(
+          new String[] {"Smack exits in room '" + roomName + "' cannot be parsed properly."});
+    }
+    Set<String> smackItems = new HashSet<>();
+    for (SmackExit smackExit : smackExits) {
+      if (!smackItems.add(smackExit.getItemUsed())) {
+        throw new InvalidArgumentException(
+            new String[] {"Items within 'smackExits' are not unique for room '" + roomName + "'"});
+      }
+    }
+
+    List<RoomExit> exitsFromRoom = new ArrayList<>(dirExits.size() + smackExits.size());
+    exitsFromRoom.addAll(dirExits);
+    exitsFromRoom.addAll(smackExits);
+    return Pair.of(new Room(roomName, description, items), exitsFromRoom);
+  }
+
+  private static String describe(String roomName) {
+    return roomName == null ? "a room without a roomName" : "'" + roomName + "'";
+  }
+
+  /**
+   * Reads a string the way Gson binds a String field, accepting numbers and booleans as their text
+   *
+   * @param pool the pool to pass the string through, or null to not pool it
+   * @return the string, or null for a json null or a value of the wrong type
+   */
+  private String readString(StringPool pool) throws IOException {
+    String s;
+    switch (in.peek()) {
+      case NULL:
+        in.nextNull();
+        return null;
+      case BOOLEAN:
+        s = Boolean.toString(in.nextBoolean());
+        break;
+      case STRING:
+      case NUMBER:
+        s = in.nextString();
+        break;
+      default:
+        in.skipValue();
+        wrongType = true;
+        return null;
+    }
+    return pool != null ? pool.intern(s) : s;
+  }
+
+  private Set<String> readItems() throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (in.peek() != JsonToken.BEGIN_ARRAY) {
+      in.skipValue();
+      wrongType = true;
+      return null;
+    }
+    Set<String> items = new LinkedHashSet<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      items.add(readString(namePool));
+    }
+    in.endArray();
+    return items;
+  }
+
+  /** Reads an array of direction exits, setting wrongType if any of them is malformed */
+  private List<DirectionExit> readDirectionExits() throws IOException {
+    List<DirectionExit> exits = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      if (in.peek() != JsonToken.BEGIN_OBJECT) {
+        in.skipValue();
+        wrongType = true;
+        continue;
+      }
+      String description = null;
+      String nextRoom = null;
+      Direction direction = null;
+      String outcomeText = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "description":
+            description = readString(textPool);
+            break;
+          case "nextRoom":
+            nextRoom = readString(namePool);
+            break;
+          case "direction":
+            direction = readDirection();
+            break;
+          case "outcomeText":
+            outcomeText = readString(textPool);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      if (direction == null) {
+        wrongType = true;
+        continue;
+      }
+      exits.add(new DirectionExit(description, nextRoom, direction, outcomeText));
+    }
+    in.endArray();
+    return exits;
+  }
+
+  /** Reads a direction by its exact name, as Gson binds enums, null if it is not a direction */
+  private Direction readDirection() throws IOException {
+    String name = readString(null);
+    if (name == null) {
+      return null;
+    }
+    try {
+      return Direction.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** Reads an array of smack exits, setting wrongType if any of them is malformed */
+  private List<SmackExit> readSmackExits() throws IOException {
+    List<SmackExit> exits = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      if (in.peek() != JsonToken.BEGIN_OBJECT) {
+        in.skipValue();
+        wrongType = true;
+        continue;
+      }
+      String description = null;
+      String nextRoom = null;
+      String itemUsed = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "description":
+            description = readString(textPool);
+            break;
+          case "nextRoom":
+            nextRoom = readString(namePool);
+            break;
+          case "item":
+            itemUsed = readString(namePool);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      if (itemUsed == null) {
+        wrongType = true;
+        continue;
+      }
+      exits.add(new SmackExit(description, nextRoom, itemUsed));
+    }
+    in.endArray();
+    return exits;
+  }
+}
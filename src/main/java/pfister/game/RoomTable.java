@@ -0,0 +1,219 @@
+package pfister.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The part of a paged world that stays resident in memory: room names, items and the exits between
+ * rooms. Descriptions and other text are not held here, only references to where that text lives
+ * in the world's text file. The rooms are split into regions of a fixed number of rooms, and each
+ * region's text is stored contiguously so it can be mapped on its own
+ */
+final class RoomTable {
+  /** Marks the start of a paged world index file, spells "ADVW" */
+  static final int MAGIC = 0x41445657;
+
+  static final int VERSION = 1;
+
+  /** Text reference used for text that is not present, such as a missing outcomeText */
+  static final long NO_TEXT = -1L;
+
+  /** Value stored as an exit's direction when the exit is a SmackExit */
+  static final byte SMACK_EXIT = -1;
+
+  final int roomsPerRegion;
+  int roomCount;
+  int startingRoom = -1;
+  String[] roomNames = new String[16];
+  long[] roomText = new long[16];
+  String[][] roomItems = new String[16][];
+  /** The index of the first exit of each room, exits of room i are [exitStart[i], exitStart[i+1]) */
+  int[] exitStart = new int[17];
+
+  int exitCount;
+  byte[] exitDirection = new byte[16];
+  String[] exitItem = new String[16];
+  int[] exitTarget = new int[16];
+  long[] exitText = new long[16];
+  long[] exitOutcome = new long[16];
+
+  /** The offset of each region in the text file, with a final entry holding the file length */
+  long[] regionOffsets = new long[2];
+
+  int regionCount;
+
+  RoomTable(int roomsPerRegion) {
+    this.roomsPerRegion = roomsPerRegion;
+  }
+
+  /**
+   * Packs the position of a piece of text within its region into a single text reference
+   *
+   * @param offset the offset of the text from the start of its region, in bytes
+   * @param length the length of the text in bytes
+   * @return the text reference
+   */
+  static long textRef(int offset, int length) {
+    return ((long) offset << 32) | (length & 0xFFFFFFFFL);
+  }
+
+  static int textOffset(long textRef) {
+    return (int) (textRef >>> 32);
+  }
+
+  static int textLength(long textRef) {
+    return (int) textRef;
+  }
+
+  int regionOf(int roomId) {
+    return roomId / roomsPerRegion;
+  }
+
+  /**
+   * Adds a room to the end of the table, its exits are added afterwards with addExit
+   *
+   * @param name the name of the room
+   * @param description a reference to the room's description
+   * @param items the items initially in the room
+   * @return the id of the new room
+   */
+  int addRoom(String name, long description, String[] items) {
+    if (roomCount == roomNames.length) {
+      int capacity = Math.max(16, roomCount * 2);
+      roomNames = Arrays.copyOf(roomNames, capacity);
+      roomText = Arrays.copyOf(roomText, capacity);
+      roomItems = Arrays.copyOf(roomItems, capacity);
+      exitStart = Arrays.copyOf(exitStart, capacity + 1);
+    }
+    int id = roomCount++;
+    roomNames[id] = name;
+    roomText[id] = description;
+    roomItems[id] = items;
+    exitStart[id + 1] = exitCount;
+    if (name.equals("StartingRoom")) {
+      startingRoom = id;
+    }
+    return id;
+  }
+
+  /**
+   * Adds an exit to the most recently added room
+   *
+   * @param direction the ordinal of the exit's direction, or SMACK_EXIT for smack exits
+   * @param item the item used by a smack exit, null for direction exits
+   * @param target the id of the room the exit leads to, may be resolved later with exitTarget
+   * @param description a reference to the exit's description
+   * @param outcome a reference to the exit's outcome text, NO_TEXT for smack exits
+   */
+  void addExit(byte direction, String item, int target, long description, long outcome) {
+    if (exitCount == exitDirection.length) {
+      int capacity = Math.max(16, exitCount * 2);
+      exitDirection = Arrays.copyOf(exitDirection, capacity);
+      exitItem = Arrays.copyOf(exitItem, capacity);
+      exitTarget = Arrays.copyOf(exitTarget, capacity);
+      exitText = Arrays.copyOf(exitText, capacity);
+      exitOutcome = Arrays.copyOf(exitOutcome, capacity);
+    }
+    int id = exitCount++;
+    exitDirection[id] = direction;
+    exitItem[id] = item;
+    exitTarget[id] = target;
+    exitText[id] = description;
+    exitOutcome[id] = outcome;
+    exitStart[roomCount] = exitCount;
+  }
+
+  /**
+   * Records where the next region starts in the text file
+   *
+   * @param offset the offset of the region in the text file
+   */
+  void startRegion(long offset) {
+    if (regionCount + 1 == regionOffsets.length) {
+      regionOffsets = Arrays.copyOf(regionOffsets, regionOffsets.length * 2);
+    }
+    regionOffsets[regionCount++] = offset;
+  }
+
+  /**
+   * Writes the table out in the paged world index format
+   *
+   * @param out the stream to write to
+   * @param textLength the total length of the text file, closing off the last region
+   * @throws IOException If the table could not be written
+   */
+  void write(DataOutputStream out, long textLength) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(roomsPerRegion);
+    out.writeInt(roomCount);
+    out.writeInt(startingRoom);
+    out.writeInt(regionCount);
+    for (int i = 0; i < regionCount; i++) {
+      out.writeLong(regionOffsets[i]);
+    }
+    out.writeLong(textLength);
+    for (int room = 0; room < roomCount; room++) {
+      out.writeUTF(roomNames[room]);
+      out.writeLong(roomText[room]);
+      out.writeInt(roomItems[room].length);
+      for (String item : roomItems[room]) {
+        out.writeUTF(item);
+      }
+      out.writeInt(exitStart[room + 1] - exitStart[room]);
+      for (int exit = exitStart[room]; exit < exitStart[room + 1]; exit++) {
+        out.writeByte(exitDirection[exit]);
+        if (exitDirection[exit] == SMACK_EXIT) {
+          out.writeUTF(exitItem[exit]);
+        }
+        out.writeInt(exitTarget[exit]);
+        out.writeLong(exitText[exit]);
+        out.writeLong(exitOutcome[exit]);
+      }
+    }
+  }
+
+  /**
+   * Reads a table written by write
+   *
+   * @param in the stream to read from
+   * @param pool the pool used to share repeated item names between rooms
+   * @return the table
+   * @throws IOException If the stream could not be read, or does not hold a paged world index
+   */
+  static RoomTable read(DataInputStream in, StringPool pool) throws IOException {
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException("File is not a paged world index, or was written by another version.");
+    }
+    RoomTable table = new RoomTable(in.readInt());
+    int roomCount = in.readInt();
+    table.startingRoom = in.readInt();
+    table.regionCount = in.readInt();
+    table.regionOffsets = new long[table.regionCount + 1];
+    for (int i = 0; i <= table.regionCount; i++) {
+      table.regionOffsets[i] = in.readLong();
+    }
+    table.roomNames = new String[roomCount];
+    table.roomText = new long[roomCount];
+    table.roomItems = new String[roomCount][];
+    table.exitStart = new int[roomCount + 1];
+    for (int room = 0; room < roomCount; room++) {
+      String name = in.readUTF();
+      long description = in.readLong();
+      String[] items = new String[in.readInt()];
+      for (int i = 0; i < items.length; i++) {
+        items[i] = pool.intern(in.readUTF());
+      }
+      table.addRoom(name, description, items);
+      int exits = in.readInt();
+      for (int i = 0; i < exits; i++) {
+        byte direction = in.readByte();
+        String item = direction == SMACK_EXIT ? pool.intern(in.readUTF()) : null;
+        table.addExit(direction, item, in.readInt(), in.readLong(), in.readLong());
+      }
+    }
+    return table;
+  }
+}
@@ -0,0 +1,260 @@
+package pfister.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes the state of an AdventureGame into a record, and rebuilds games from those records. Slot
+ * records written into buffers all have the same size for the same map, so they can be packed into
+ * flat buffers, and games with more item changes than a slot holds must be encoded into an array
+ * instead. A record holds:
+ *
+ * <ul>
+ *   <li>the id of the room the player is in
+ *   <li>the inventory, as a bitmask over every item in the map
+ *   <li>the items that have been taken from or dropped into rooms, as a count followed by pairs of
+ *       room id and item id, with taken items stored as the complement of their item id
+ * </ul>
+ *
+ * Room and item ids only depend on the map file, so records can be moved between processes that
+ * loaded the same map. Only absolute buffer operations are used, so different records in the same
+ * buffer can be read and written from different threads
+ */
+public final class SessionCodec {
+  /** The number of item changes a slot record holds when no limit is given */
+  public static final int DEFAULT_MAX_ITEM_CHANGES = 32;
+
+  /** The size of a record before its item changes: room id, and the change count */
+  private static final int FIXED_FIELDS_SIZE = 2 * Integer.BYTES;
+
+  private final WorldMap gameMap;
+  private final String[] itemNames;
+  private final Map<String, Integer> itemIds;
+  private final int inventoryWords;
+  private final int maxItemChanges;
+  private final int recordSize;
+
+  public SessionCodec(WorldMap gameMap) {
+    this(gameMap, DEFAULT_MAX_ITEM_CHANGES);
+  }
+
+  /**
+   * Creates a codec for games played in a map. The initial items of every room are read once to
+   * number them, without building the rooms
+   *
+   * @param gameMap the map the games are played in
+   * @param maxItemChanges the most item changes a slot record holds, lowered to the most a game in
+   *     this map can ever have. Games with more changes than this are encoded into arrays instead
+   */
+  public SessionCodec(WorldMap gameMap, int maxItemChanges) {
+    this.gameMap = gameMap;
+    // Items only ever come from rooms, so the items in the map are every item a game can hold
+    Map<String, Integer> ids = new LinkedHashMap<>();
+    long placements = 0;
+    for (int room = 0; room < gameMap.getRoomCount(); room++) {
+      for (String item : gameMap.getInitialItems(room)) {
+        ids.putIfAbsent(item, ids.size());
+        placements++;
+      }
+    }
+    // Every item taken from a room is one change, and every item dropped where it did not start
+    // needs an item taken first, so a game never has more than two changes per placed item
+    this.maxItemChanges = (int) Math.min(maxItemChanges, 2 * placements);
+    itemIds = new HashMap<>(ids);
+    itemNames = ids.keySet().toArray(new String[0]);
+    inventoryWords = (itemNames.length + Long.SIZE - 1) / Long.SIZE;
+    recordSize = sizeFor(this.maxItemChanges);
+  }
+
+  private int sizeFor(int itemChanges) {
+    return FIXED_FIELDS_SIZE + inventoryWords * Long.BYTES + itemChanges * 2 * Integer.BYTES;
+  }
+
+  /**
+   * Gets the size of every slot record written into buffers by this codec
+   *
+   * @return the record size in bytes
+   */
+  public int getRecordSize() {
+    return recordSize;
+  }
+
+  /**
+   * Writes a game's state into a slot record in a buffer
+   *
+   * @param game the game to encode, it must be played in this codec's map
+   * @param buffer the buffer to write to
+   * @param offset the position of the record in the buffer
+   * @throws IllegalStateException If the game has more item changes than a slot record holds
+   */
+  public void encode(AdventureGame game, ByteBuffer buffer, int offset) {
+    if (!tryEncode(game, buffer, offset)) {
+      throw new IllegalStateException(
+          "Game has changed items in more places than a record can hold (" + maxItemChanges + ").");
+    }
+  }
+
+  /**
+   * Writes a game's state into a slot record in a buffer, if it fits
+   *
+   * @param game the game to encode, it must be played in this codec's map
+   * @param buffer the buffer to write to
+   * @param offset the position of the record in the buffer
+   * @return whether the game was written, false if it has more item changes than a slot record
+   *     holds, in which case the buffer is left untouched
+   */
+  public boolean tryEncode(AdventureGame game, ByteBuffer buffer, int offset) {
+    int[] changes = itemChanges(game);
+    if (changes.length > maxItemChanges * 2) {
+      return false;
+    }
+    write(game, changes, buffer, offset);
+    return true;
+  }
+
+  /**
+   * Works out which items a game has taken from or dropped into rooms
+   *
+   * @return pairs of room id and item id, with taken items stored as the complement of their id
+   */
+  private int[] itemChanges(AdventureGame game) {
+    int[] changes = new int[16];
+    int length = 0;
+    for (Room room : game.getChangedRooms()) {
+      int roomId = gameMap.getRoomId(room);
+      Collection<String> initialItems = gameMap.getInitialItems(roomId);
+      for (String item : initialItems) {
+        if (!room.containsItem(item)) {
+          changes = addChange(changes, length, roomId, ~itemId(item));
+          length += 2;
+        }
+      }
+      for (String item : room.getItems()) {
+        if (!initialItems.contains(item)) {
+          changes = addChange(changes, length, roomId, itemId(item));
+          length += 2;
+        }
+      }
+    }
+    return Arrays.copyOf(changes, length);
+  }
+
+  private static int[] addChange(int[] changes, int length, int roomId, int itemId) {
+    if (length == changes.length) {
+      changes = Arrays.copyOf(changes, length * 2);
+    }
+    changes[length] = roomId;
+    changes[length + 1] = itemId;
+    return changes;
+  }
+
+  private void write(AdventureGame game, int[] changes, ByteBuffer buffer, int offset) {
+    long[] inventory = new long[inventoryWords];
+    for (String item : game.getInventory()) {
+      int id = itemId(item);
+      inventory[id / Long.SIZE] |= 1L << (id % Long.SIZE);
+    }
+
+    int position = offset;
+    buffer.putInt(position, gameMap.getRoomId(game.getCurrentRoom()));
+    position += Integer.BYTES;
+    for (long word : inventory) {
+      buffer.putLong(position, word);
+      position += Long.BYTES;
+    }
+    buffer.putInt(position, changes.length / 2);
+    position += Integer.BYTES;
+    for (int change : changes) {
+      buffer.putInt(position, change);
+      position += Integer.BYTES;
+    }
+  }
+
+  /**
+   * Rebuilds a game from a record
+   *
+   * @param buffer the buffer to read from
+   * @param offset the position of the record in the buffer
+   * @param examineCache the examine cache for the rebuilt game, or null to not cache
+   * @return a game in the state the record was written in
+   */
+  public AdventureGame decode(ByteBuffer buffer, int offset, ExamineCache examineCache) {
+    int position = offset;
+    int roomId = buffer.getInt(position);
+    position += Integer.BYTES;
+
+    Set<String> inventory = new HashSet<>();
+    for (int word = 0; word < inventoryWords; word++) {
+      long bits = buffer.getLong(position);
+      position += Long.BYTES;
+      while (bits != 0) {
+        inventory.add(itemNames[word * Long.SIZE + Long.numberOfTrailingZeros(bits)]);
+        bits &= bits - 1;
+      }
+    }
+
+    int changes = buffer.getInt(position);
+    position += Integer.BYTES;
+    Map<Integer, Room> changedRooms = new HashMap<>();
+    for (int change = 0; change < changes; change++) {
+      int changedRoom = buffer.getInt(position);
+      int itemId = buffer.getInt(position + Integer.BYTES);
+      position += 2 * Integer.BYTES;
+      Room room =
+          changedRooms.computeIfAbsent(
+              changedRoom,
+              id -> {
+                Room initial = gameMap.getRoom(id);
+                return new Room(initial.getRoomName(), initial.getDescription(), initial.getItems());
+              });
+      if (itemId < 0) {
+        room.removeItem(itemNames[~itemId]);
+      } else {
+        room.addItem(itemNames[itemId]);
+      }
+    }
+
+    AdventureGame game = new AdventureGame(gameMap, examineCache);
+    game.restore(roomId, inventory, changedRooms.values());
+    return game;
+  }
+
+  /**
+   * Encodes a game's state into a new array, for sending it elsewhere or for games too big for a
+   * slot record. The array is as long as the game's item changes need, however many there are
+   *
+   * @param game the game to encode
+   * @return the record
+   */
+  public byte[] encode(AdventureGame game) {
+    int[] changes = itemChanges(game);
+    byte[] record = new byte[sizeFor(changes.length / 2)];
+    write(game, changes, ByteBuffer.wrap(record), 0);
+    return record;
+  }
+
+  /**
+   * Rebuilds a game from a record made by encode
+   *
+   * @param record the record
+   * @param examineCache the examine cache for the rebuilt game, or null to not cache
+   * @return a game in the state the record was written in
+   */
+  public AdventureGame decode(byte[] record, ExamineCache examineCache) {
+    return decode(ByteBuffer.wrap(record), 0, examineCache);
+  }
+
+  private int itemId(String item) {
+    Integer id = itemIds.get(item);
+    if (id == null) {
+      throw new IllegalStateException("Item '" + item + "' is not in the game map.");
+    }
+    return id;
+  }
+}
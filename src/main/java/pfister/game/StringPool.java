@@ -0,0 +1,47 @@
+package pfister.game;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates the text of a map while it is being loaded. Maps repeat the same text many times,
+ * such as default smack descriptions, item names and the names of rooms that several exits lead
+ * to, and the json parser creates a separate String for every occurrence. Passing each string
+ * through the same pool means every occurrence shares one String. The pool is only needed while
+ * loading and can be thrown away afterwards, the strings it handed out stay shared
+ */
+public final class StringPool {
+  private final Map<String, String> strings = new HashMap<>();
+  private long lookups;
+
+  /**
+   * Gets the pooled copy of a string, adding it to the pool if it has not been seen before
+   *
+   * @param s the string to look up, may be null
+   * @return an equal string shared with every other equal string passed to this pool
+   */
+  public String intern(String s) {
+    if (s == null) return null;
+    lookups++;
+    String pooled = strings.putIfAbsent(s, s);
+    return pooled == null ? s : pooled;
+  }
+
+  /**
+   * Gets the number of distinct strings in the pool
+   *
+   * @return the number of distinct strings
+   */
+  public int size() {
+    return strings.size();
+  }
+
+  /**
+   * Gets the number of strings passed to intern that were equal to a string already in the pool
+   *
+   * @return the number of duplicate strings replaced by a pooled copy
+   */
+  public long getDuplicateCount() {
+    return lookups - strings.size();
+  }
+}
@@ -0,0 +1,114 @@
+package pfister.game;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import one.util.streamex.StreamEx;
+
+/**
+ * A world an AdventureGame can be played in, made up of rooms and the exits between them. Rooms
+ * are identified by their name, so implementations are free to hand out a new Room object every
+ * time one is requested
+ */
+public interface WorldMap {
+
+  /**
+   * Gets the starting room of the map, where the player is placed when the game starts
+   *
+   * @return The starting room
+   */
+  Room getStartingRoom();
+
+  /**
+   * Gets the number of rooms in the map. Rooms are numbered from zero, and a room keeps the same id
+   * every time the same map is loaded
+   *
+   * @return the number of rooms
+   */
+  int getRoomCount();
+
+  /**
+   * Gets a room by its id
+   *
+   * @param roomId the id of the room, between zero and the room count
+   * @return the room, as it is when the game starts
+   */
+  Room getRoom(int roomId);
+
+  /**
+   * Gets the items a room holds when the game starts, without building the room when the map can
+   * avoid it
+   *
+   * @param roomId the id of the room, between zero and the room count
+   * @return the room's initial items
+   */
+  default Collection<String> getInitialItems(int roomId) {
+    return getRoom(roomId).getItems();
+  }
+
+  /**
+   * Gets the id of a room
+   *
+   * @param r the room to look up
+   * @return the id of the room, or -1 if the room is not in this map
+   */
+  int getRoomId(Room r);
+
+  /**
+   * Returns the target room for the RoomExit passed
+   *
+   * @param e a RoomExit leading to some specific room
+   * @return An optional room value, empty if the target room could not be found in the map
+   */
+  Optional<Room> getNextRoom(RoomExit e);
+
+  /**
+   * Gets all potential ways a user can leave a room, either through the "go" command or the "smack"
+   * command
+   *
+   * @param r the room to check
+   * @return A set containing all the RoomExits for this room
+   */
+  Set<RoomExit> getExitsForRoom(Room r);
+
+  /**
+   * Estimates the heap retained by this map, along with its room, exit and item counts
+   *
+   * @return the estimated footprint of the map
+   */
+  Footprint getFootprint();
+
+  /**
+   * Gets all the potential ways a user can leave the room by typing "go <direction>"
+   *
+   * @param r the room to check
+   * @return A set of DirectionExits the user can use
+   */
+  default Set<DirectionExit> getDirectionExitsForRoom(Room r) {
+    return StreamEx.of(getExitsForRoom(r)).select(DirectionExit.class).collect(Collectors.toSet());
+  }
+
+  /**
+   * Gets all the potential ways a user can leave the room by typing "smack"
+   *
+   * @param r the room to check
+   * @return A set of SmackExits the user can use
+   */
+  default Set<SmackExit> getSmackExitsForRoom(Room r) {
+    return StreamEx.of(getExitsForRoom(r)).select(SmackExit.class).collect(Collectors.toSet());
+  }
+
+  /**
+   * Gets the default smack exit for a room, this is defined in the json file as a smackExit with
+   * "default" for the item field
+   *
+   * @param r the room to check
+   * @return An optional SmackExit, empty if the room does not define a default smack interaction
+   */
+  default Optional<SmackExit> getDefaultSmackExitForRoom(Room r) {
+    return getSmackExitsForRoom(r).stream()
+        .filter(v -> v.getItemUsed().equalsIgnoreCase("default"))
+        .findFirst();
+  }
+}
@@ -0,0 +1,270 @@
+package pfister.server;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides whether a command is let into the server, so a few sessions spamming commands cannot
+ * starve everyone else. Two checks are made:
+ *
+ * <ul>
+ *   <li>Each session has a token bucket refilling at a fixed rate. The bucket is kept as a single
+ *       theoretical arrival time (the generic cell rate algorithm), which behaves exactly like a
+ *       token bucket but fits in one AtomicLong
+ *   <li>The whole server has a limit on commands in flight. When the average latency of recent
+ *       commands rises above the target, the limit shrinks in proportion, shedding load before the
+ *       queues grow further
+ * </ul>
+ *
+ * Every check is a compare and set loop on an atomic. The only lock taken is ConcurrentHashMap's
+ * lock on a single bin, briefly, when a session's bucket is first created. Full buckets are swept a
+ * few at a time as new ones are created, so no request ever waits on a scan of every session. The
+ * controller is therefore never the bottleneck it guards against
+ */
+public class AdmissionController {
+  /** The outcome of asking to run a command */
+  public enum Decision {
+    ADMITTED(""),
+    RATE_LIMITED("You are sending commands too quickly, slow down."),
+    OVERLOADED("The server is busy, try again shortly.");
+
+    private final String message;
+
+    Decision(String message) {
+      this.message = message;
+    }
+
+    /**
+     * Gets the text sent back in place of a rejected command's output
+     *
+     * @return the rejection message, empty for admitted commands
+     */
+    public String getMessage() {
+      return message;
+    }
+  }
+
+  /** How much each latency sample moves the average, as a right shift (1/8) */
+  private static final int LATENCY_SMOOTHING_SHIFT = 3;
+  /** The most buckets checked for being full each time a bucket is created */
+  private static final int SWEEP_BATCH = 64;
+
+  private final long emissionIntervalNanos;
+  private final long burstToleranceNanos;
+  private final int maxInFlight;
+  private final long latencyTargetNanos;
+  private final LongSupplier clock;
+
+  /**
+   * Each session's theoretical arrival time, when its bucket would next be full. A bucket whose
+   * arrival time has passed is full, the same as having no bucket, so it can be swept away
+   */
+  private final ConcurrentMap<String, AtomicLong> sessionBuckets = new ConcurrentHashMap<>();
+
+  /** Held by the one thread sweeping, the others skip the sweep rather than wait */
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+  /** Where the sweep carries on from, guarded by sweeping */
+  private Iterator<AtomicLong> sweepCursor;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong averageLatencyNanos = new AtomicLong();
+  private final LongAdder rateLimited = new LongAdder();
+  private final LongAdder shed = new LongAdder();
+
+  /**
+   * Creates an admission controller timed by System.nanoTime
+   *
+   * @param commandsPerSecond the rate each session's bucket refills at
+   * @param burst the number of commands a session can send at once with a full bucket
+   * @param maxInFlight the most commands running or queued across the server at once
+   * @param latencyTargetMillis the average command latency above which load is shed
+   */
+  public AdmissionController(
+      double commandsPerSecond, int burst, int maxInFlight, long latencyTargetMillis) {
+    this(commandsPerSecond, burst, maxInFlight, latencyTargetMillis, System::nanoTime);
+  }
+
+  /**
+   * Creates an admission controller
+   *
+   * @param commandsPerSecond the rate each session's bucket refills at
+   * @param burst the number of commands a session can send at once with a full bucket
+   * @param maxInFlight the most commands running or queued across the server at once
+   * @param latencyTargetMillis the average command latency above which load is shed
+   * @param clock the source of time in nanoseconds
+   */
+  public AdmissionController(
+      double commandsPerSecond,
+      int burst,
+      int maxInFlight,
+      long latencyTargetMillis,
+      LongSupplier clock) {
+    if (commandsPerSecond <= 0 || burst < 1 || maxInFlight < 1) {
+      throw new IllegalArgumentException("Rate, burst and in flight limit must be positive.");
+    }
+    this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / commandsPerSecond);
+    this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+    this.maxInFlight = maxInFlight;
+    this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+    this.clock = clock;
+  }
+
+  /**
+   * Asks to run a command for a session. An admitted command must be followed by a call to
+   * complete once it has run
+   *
+   * @param sessionId the session the command belongs to
+   * @return whether the command may run, and if not why
+   */
+  public Decision admit(String sessionId) {
+    AtomicLong bucket = bucketFor(sessionId);
+    if (!takeToken(bucket)) {
+      rateLimited.increment();
+      return Decision.RATE_LIMITED;
+    }
+    int limit = currentLimit();
+    int running;
+    do {
+      running = inFlight.get();
+      if (running >= limit) {
+        // The command never ran, so the session gets its token back
+        bucket.addAndGet(-emissionIntervalNanos);
+        shed.increment();
+        return Decision.OVERLOADED;
+      }
+    } while (!inFlight.compareAndSet(running, running + 1));
+    return Decision.ADMITTED;
+  }
+
+  /**
+   * Records that an admitted command has finished
+   *
+   * @param admittedAtNanos the time the command was admitted, from now()
+   */
+  public void complete(long admittedAtNanos) {
+    inFlight.decrementAndGet();
+    long latency = clock.getAsLong() - admittedAtNanos;
+    long average;
+    long updated;
+    do {
+      average = averageLatencyNanos.get();
+      updated = average + ((latency - average) >> LATENCY_SMOOTHING_SHIFT);
+    } while (!averageLatencyNanos.compareAndSet(average, updated));
+  }
+
+  /**
+   * Drops a session's bucket, for when the session ends
+   *
+   * @param sessionId the session to forget
+   */
+  public void forget(String sessionId) {
+    sessionBuckets.remove(sessionId);
+  }
+
+  /**
+   * Gets the current time on this controller's clock, for timing admitted commands
+   *
+   * @return the time in nanoseconds
+   */
+  public long now() {
+    return clock.getAsLong();
+  }
+
+  /**
+   * Gets a session's bucket, creating it if the session has none. Creating a bucket first sweeps a
+   * few buckets for being full, so sessions which stop sending commands without being forgotten do
+   * not keep their buckets forever, and the map is swept at least as fast as it grows
+   */
+  private AtomicLong bucketFor(String sessionId) {
+    AtomicLong bucket = sessionBuckets.get(sessionId);
+    if (bucket != null) {
+      return bucket;
+    }
+    sweep();
+    return sessionBuckets.computeIfAbsent(sessionId, id -> new AtomicLong(Long.MIN_VALUE));
+  }
+
+  /** Removes the full buckets among the next few buckets, carrying on where the last sweep ended */
+  private void sweep() {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long now = clock.getAsLong();
+      for (int i = 0; i < SWEEP_BATCH; i++) {
+        if (sweepCursor == null || !sweepCursor.hasNext()) {
+          sweepCursor = sessionBuckets.values().iterator();
+          if (!sweepCursor.hasNext()) return;
+        }
+        // A command racing the sweep may take its token from a swept bucket, letting one extra
+        // command through for that session, which is cheaper than locking every bucket
+        if (isFull(sweepCursor.next().get(), now)) {
+          sweepCursor.remove();
+        }
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  private static boolean isFull(long arrival, long now) {
+    return arrival == Long.MIN_VALUE || arrival - now <= 0;
+  }
+
+  private boolean takeToken(AtomicLong bucket) {
+    long now = clock.getAsLong();
+    long arrival;
+    long next;
+    do {
+      arrival = bucket.get();
+      // A bucket that has been full for a while starts from now, not from its old arrival time
+      long start = isFull(arrival, now) ? now : arrival;
+      if (start - now > burstToleranceNanos) {
+        return false;
+      }
+      next = start + emissionIntervalNanos;
+    } while (!bucket.compareAndSet(arrival, next));
+    return true;
+  }
+
+  /** The in flight limit, scaled down while the average latency is above the target */
+  private int currentLimit() {
+    long average = averageLatencyNanos.get();
+    if (average <= latencyTargetNanos) {
+      return maxInFlight;
+    }
+    return Math.max(1, (int) (maxInFlight * ((double) latencyTargetNanos / average)));
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public long getAverageLatencyNanos() {
+    return averageLatencyNanos.get();
+  }
+
+  public long getRateLimitedCount() {
+    return rateLimited.sum();
+  }
+
+  public long getShedCount() {
+    return shed.sum();
+  }
+
+  /**
+   * Gets the number of sessions with a bucket, including full buckets not swept yet
+   *
+   * @return the number of buckets
+   */
+  public int getBucketCount() {
+    return sessionBuckets.size();
+  }
+}
@@ -0,0 +1,420 @@
+package pfister.server;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import pfister.game.AdventureGame;
+import pfister.game.ExamineCache;
+import pfister.game.GameListener;
+import pfister.game.SessionCodec;
+import pfister.game.WorldMap;
+import pfister.input.Command;
+import pfister.server.AdmissionController.Decision;
+
+/**
+ * Runs many games at once, one per session, all played in the same map. Commands are submitted
+ * asynchronously and their output is returned through a CompletableFuture. Commands for a session
+ * run one at a time in the order they were submitted, through that session's mailbox, while
+ * different sessions run in parallel on a shared executor. No thread is tied to a session, and
+ * AdventureGame needs no locking since only one thread ever uses a game at a time. Examine output
+ * is cached once for all sessions
+ *
+ * <p>Games are either kept on the heap, or parked in an OffHeapSessionStore and only rebuilt while
+ * one of their commands runs. An AdmissionController can be given to turn away commands from
+ * sessions sending too many, or while the server is overloaded, before they cost any more than a
+ * completed future. A listener factory can be given to watch every session's game, for example
+ * GameAnalytics::listenerFor
+ */
+public class AsyncGameServer {
+  private final WorldMap gameMap;
+  private final Executor executor;
+  private final ExamineCache examineCache = new ExamineCache();
+  /** Where idle games are parked, null to keep every game on the heap */
+  private final OffHeapSessionStore sessionStore;
+  /** Decides which commands are run, null to run every command */
+  private final AdmissionController admission;
+  /** Creates the listener for each session's game, null to not listen */
+  private final Function<String, GameListener> listeners;
+  /** Encodes games for moving them to another server, created when first needed */
+  private SessionCodec codec;
+  private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a server which runs commands on the common fork join pool
+   *
+   * @param gameMap the map every session plays in, it is shared between sessions
+   */
+  public AsyncGameServer(WorldMap gameMap) {
+    this(gameMap, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a server which runs commands on the given executor
+   *
+   * @param gameMap the map every session plays in, it is shared between sessions
+   * @param executor the executor every session's commands run on
+   */
+  public AsyncGameServer(WorldMap gameMap, Executor executor) {
+    this(gameMap, executor, null);
+  }
+
+  /**
+   * Creates a server which runs commands on the given executor and parks games off the heap between
+   * commands
+   *
+   * @param gameMap the map every session plays in, it is shared between sessions
+   * @param executor the executor every session's commands run on
+   * @param sessionStore the store games are parked in, created for the same map, or null to keep
+   *     games on the heap
+   */
+  public AsyncGameServer(WorldMap gameMap, Executor executor, OffHeapSessionStore sessionStore) {
+    this(gameMap, executor, sessionStore, null);
+  }
+
+  /**
+   * Creates a server which runs commands on the given executor, parks games off the heap between
+   * commands and only runs the commands let in by an admission controller
+   *
+   * @param gameMap the map every session plays in, it is shared between sessions
+   * @param executor the executor every session's commands run on
+   * @param sessionStore the store games are parked in, created for the same map, or null to keep
+   *     games on the heap
+   * @param admission the controller deciding which commands run, or null to run every command
+   */
+  public AsyncGameServer(
+      WorldMap gameMap,
+      Executor executor,
+      OffHeapSessionStore sessionStore,
+      AdmissionController admission) {
+    this(gameMap, executor, sessionStore, admission, null);
+  }
+
+  /**
+   * Creates a server which runs commands on the given executor, parks games off the heap between
+   * commands, only runs the commands let in by an admission controller and tells a listener about
+   * what happens in each session's game
+   *
+   * @param gameMap the map every session plays in, it is shared between sessions
+   * @param executor the executor every session's commands run on
+   * @param sessionStore the store games are parked in, created for the same map, or null to keep
+   *     games on the heap
+   * @param admission the controller deciding which commands run, or null to run every command
+   * @param listeners creates the listener for a session id, or null to not listen
+   */
+  public AsyncGameServer(
+      WorldMap gameMap,
+      Executor executor,
+      OffHeapSessionStore sessionStore,
+      AdmissionController admission,
+      Function<String, GameListener> listeners) {
+    this.gameMap = gameMap;
+    this.executor = executor;
+    this.sessionStore = sessionStore;
+    this.admission = admission;
+    this.listeners = listeners;
+  }
+
+  /**
+   * Submits a command for a session, starting a new game for the session if it does not have one.
+   * The command runs after every command already submitted for the same session
+   *
+   * @param sessionId the session the command belongs to
+   * @param command the command the player entered
+   * @return a future completed with the output of the command, or already completed with the
+   *     rejection message if the admission controller turned the command away
+   */
+  public CompletableFuture<String> submit(String sessionId, Command command) {
+    if (admission != null) {
+      Decision decision = admission.admit(sessionId);
+      if (decision != Decision.ADMITTED) {
+        // Rejected before the session is looked up, so a rejected command never starts a game
+        return CompletableFuture.completedFuture(decision.getMessage());
+      }
+    }
+    long admittedAt = admission != null ? admission.now() : 0;
+    CompletableFuture<String> result = new CompletableFuture<>();
+    try {
+      enqueue(sessionId, command, result, admittedAt);
+    } catch (RuntimeException e) {
+      // Starting the session or scheduling its mailbox failed, so the command will never finish
+      if (admission != null) {
+        admission.complete(admittedAt);
+      }
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Queues a command on the mailbox of the session currently using a session id, starting a new
+   * game for the session if it does not have one
+   */
+  private void enqueue(
+      String sessionId, Command command, CompletableFuture<String> result, long admittedAt) {
+    Session session = sessions.computeIfAbsent(sessionId, this::startSession);
+    session.execute(new CommandTask(sessionId, session, command, result, admittedAt));
+  }
+
+  /**
+   * Starts a new game for a session, telling its listener the player has entered the starting room
+   *
+   * @param sessionId the session
+   * @return the session
+   */
+  private Session startSession(String sessionId) {
+    AdventureGame game = new AdventureGame(gameMap, examineCache);
+    GameListener listener = listeners != null ? listeners.apply(sessionId) : null;
+    if (listener != null) {
+      listener.onRoomEntered(game.getCurrentRoom());
+    }
+    return new Session(game, listener);
+  }
+
+  /**
+   * Ends a session. Commands already submitted for the session still run, a later command for the
+   * same session id starts a new game, as does a command submitted while the session was ending
+   *
+   * @param sessionId the session to end
+   * @return whether the session existed
+   */
+  public boolean closeSession(String sessionId) {
+    Session session = sessions.remove(sessionId);
+    if (session == null) {
+      return false;
+    }
+    if (admission != null) {
+      admission.forget(sessionId);
+    }
+    session.closeWhenDrained();
+    return true;
+  }
+
+  /**
+   * Removes a session from this server and encodes its game, for moving it to another server. The
+   * game is encoded after every command already submitted for the session has run. If the game
+   * cannot be encoded the session is put back, unless a new session with the same id has started
+   *
+   * @param sessionId the session to remove
+   * @return a future completed with the encoded game, or with null if there is no such session
+   */
+  public CompletableFuture<byte[]> exportSession(String sessionId) {
+    Session session = sessions.remove(sessionId);
+    if (session == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    if (admission != null) {
+      admission.forget(sessionId);
+    }
+    CompletableFuture<byte[]> result = new CompletableFuture<>();
+    session.execute(
+        new SessionMailbox.Task() {
+          @Override
+          public void run() {
+            byte[] snapshot;
+            try {
+              snapshot = getCodec().encode(session.load());
+            } catch (RuntimeException e) {
+              restore();
+              result.completeExceptionally(e);
+              return;
+            }
+            session.close();
+            result.complete(snapshot);
+          }
+
+          @Override
+          public void reject(RejectedExecutionException e) {
+            restore();
+            result.completeExceptionally(e);
+          }
+
+          private void restore() {
+            if (sessions.putIfAbsent(sessionId, session) != null) {
+              session.close();
+            }
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Adds a session moved from another server playing the same map, replacing any session with the
+   * same id
+   *
+   * @param sessionId the session to add
+   * @param snapshot the session's game, as encoded by exportSession
+   */
+  public void importSession(String sessionId, byte[] snapshot) {
+    GameListener listener = listeners != null ? listeners.apply(sessionId) : null;
+    Session session = new Session(getCodec().decode(snapshot, examineCache), listener);
+    Session replaced = sessions.put(sessionId, session);
+    if (replaced != null) {
+      replaced.closeWhenDrained();
+    }
+  }
+
+  private synchronized SessionCodec getCodec() {
+    if (codec == null) {
+      codec = sessionStore != null ? sessionStore.getCodec() : new SessionCodec(gameMap);
+    }
+    return codec;
+  }
+
+  /**
+   * Gets the cache of examine output shared by every session, for its hit and miss statistics
+   *
+   * @return the examine cache
+   */
+  public ExamineCache getExamineCache() {
+    return examineCache;
+  }
+
+  /**
+   * Gets the controller deciding which commands run, for its rejection counts
+   *
+   * @return the admission controller, or null if every command runs
+   */
+  public AdmissionController getAdmissionController() {
+    return admission;
+  }
+
+  public Set<String> getSessionIds() {
+    return Collections.unmodifiableSet(sessions.keySet());
+  }
+
+  /** Runs one command on its session's mailbox, completing the command's future */
+  private final class CommandTask implements SessionMailbox.Task {
+    private final String sessionId;
+    private final Session session;
+    private final Command command;
+    private final CompletableFuture<String> result;
+    private final long admittedAt;
+
+    private CommandTask(
+        String sessionId,
+        Session session,
+        Command command,
+        CompletableFuture<String> result,
+        long admittedAt) {
+      this.sessionId = sessionId;
+      this.session = session;
+      this.command = command;
+      this.result = result;
+      this.admittedAt = admittedAt;
+    }
+
+    @Override
+    public void run() {
+      if (session.closed) {
+        // The session was closed or exported while this command was queued behind it, so the
+        // command goes to whichever session has the id now, starting a new one if there is none
+        try {
+          enqueue(sessionId, command, result, admittedAt);
+        } catch (RuntimeException e) {
+          result.completeExceptionally(e);
+          finish();
+        }
+        return;
+      }
+      try {
+        result.complete(session.play(command));
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      } finally {
+        finish();
+      }
+    }
+
+    @Override
+    public void reject(RejectedExecutionException e) {
+      result.completeExceptionally(e);
+      finish();
+    }
+
+    private void finish() {
+      if (admission != null) {
+        admission.complete(admittedAt);
+      }
+    }
+  }
+
+  /**
+   * A session's game, and the mailbox every access to the game goes through. The game is either
+   * held here or parked in the session store. The session is its own mailbox, so a parked session
+   * is a single small object on the heap
+   */
+  private final class Session extends SessionMailbox {
+    private final AdventureGame game;
+    private final int slot;
+    private final GameListener listener;
+    /** Set once the session's slot is freed, only used from the mailbox */
+    private boolean closed;
+
+    private Session(AdventureGame newGame, GameListener listener) {
+      super(executor);
+      this.listener = listener;
+      if (sessionStore == null) {
+        game = newGame;
+        game.setListener(listener);
+        slot = -1;
+      } else {
+        game = null;
+        slot = sessionStore.allocate(newGame);
+      }
+    }
+
+    /** Gets the session's game, rebuilding it from the store if it is parked */
+    private AdventureGame load() {
+      return sessionStore == null ? game : sessionStore.load(slot, examineCache);
+    }
+
+    /** Runs a command, parking the game again afterwards if it lives in the store */
+    private String play(Command command) {
+      AdventureGame loaded = load();
+      if (sessionStore != null) {
+        // Games rebuilt from the store start without a listener
+        loaded.setListener(listener);
+      }
+      String output = loaded.execute(command);
+      if (sessionStore != null) {
+        sessionStore.save(slot, loaded);
+      }
+      return output;
+    }
+
+    /**
+     * Closes the session after every task already queued for it, or straight away if the executor
+     * rejects the mailbox, so the slot is freed either way
+     */
+    private void closeWhenDrained() {
+      execute(
+          new SessionMailbox.Task() {
+            @Override
+            public void run() {
+              close();
+            }
+
+            @Override
+            public void reject(RejectedExecutionException e) {
+              close();
+            }
+          });
+    }
+
+    private void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (sessionStore != null) {
+        sessionStore.free(slot);
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package pfister.server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import pfister.game.Hashing;
+
+/**
+ * Places keys on nodes by consistent hashing. Each node is hashed onto a ring at several points,
+ * and a key belongs to the first node point at or after the key's own hash. Adding or removing a
+ * node only moves the keys next to that node's points, every other key stays where it was. Not
+ * thread safe, callers must guard changes to the ring
+ *
+ * @param <N> the type of the nodes
+ */
+public final class ConsistentHashRing<N> {
+  /** The number of points each node has on the ring when no number is given */
+  public static final int DEFAULT_POINTS_PER_NODE = 128;
+
+  private final int pointsPerNode;
+  private final TreeMap<Long, String> ring = new TreeMap<>();
+  private final Map<String, N> nodes = new LinkedHashMap<>();
+
+  public ConsistentHashRing() {
+    this(DEFAULT_POINTS_PER_NODE);
+  }
+
+  /**
+   * Creates an empty ring
+   *
+   * @param pointsPerNode the number of points each node has on the ring, more points spread keys
+   *     more evenly between nodes
+   */
+  public ConsistentHashRing(int pointsPerNode) {
+    this.pointsPerNode = pointsPerNode;
+  }
+
+  /**
+   * Adds a node to the ring
+   *
+   * @param nodeId the node's id, which decides where the node sits on the ring
+   * @param node the node
+   */
+  public void add(String nodeId, N node) {
+    if (nodes.containsKey(nodeId)) {
+      throw new IllegalArgumentException("Node '" + nodeId + "' is already on the ring.");
+    }
+    nodes.put(nodeId, node);
+    for (int point = 0; point < pointsPerNode; point++) {
+      ring.put(Hashing.hash64(nodeId + "#" + point), nodeId);
+    }
+  }
+
+  /**
+   * Removes a node from the ring
+   *
+   * @param nodeId the node's id
+   * @return the removed node, or null if there was no node with that id
+   */
+  public N remove(String nodeId) {
+    N node = nodes.remove(nodeId);
+    if (node != null) {
+      ring.values().removeIf(nodeId::equals);
+    }
+    return node;
+  }
+
+  /**
+   * Gets the node a key belongs to
+   *
+   * @param key the key to place
+   * @return the node owning the key, or null if the ring is empty
+   */
+  public N nodeFor(String key) {
+    if (ring.isEmpty()) return null;
+    Entry<Long, String> point = ring.ceilingEntry(Hashing.hash64(key));
+    if (point == null) {
+      // Past the last point, wrap around to the start of the ring
+      point = ring.firstEntry();
+    }
+    return nodes.get(point.getValue());
+  }
+
+  public N getNode(String nodeId) {
+    return nodes.get(nodeId);
+  }
+
+  public Collection<N> getNodes() {
+    return Collections.unmodifiableCollection(nodes.values());
+  }
+}
@@ -0,0 +1,47 @@
+package pfister.server;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import pfister.input.Command;
+
+/**
+ * A node of a sharded game cluster, which runs the sessions placed on it. Every node of a cluster
+ * plays the same map, so sessions can move between nodes as encoded snapshots
+ */
+public interface GameNode {
+
+  String getNodeId();
+
+  /**
+   * Submits a command for a session owned by this node
+   *
+   * @param sessionId the session the command belongs to
+   * @param command the command the player entered
+   * @return a future completed with the output of the command
+   */
+  CompletableFuture<String> submit(String sessionId, Command command);
+
+  /**
+   * Removes a session from this node, after its submitted commands have run
+   *
+   * @param sessionId the session to remove
+   * @return a future completed with the session's snapshot, or with null if there is no such
+   *     session
+   */
+  CompletableFuture<byte[]> exportSession(String sessionId);
+
+  /**
+   * Adds a session exported from another node
+   *
+   * @param sessionId the session to add
+   * @param snapshot the session's snapshot
+   */
+  void importSession(String sessionId, byte[] snapshot);
+
+  /**
+   * Gets the sessions currently on this node
+   *
+   * @return the ids of the sessions
+   */
+  Set<String> getSessionIds();
+}
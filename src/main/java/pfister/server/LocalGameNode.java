@@ -0,0 +1,45 @@
+package pfister.server;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import pfister.input.Command;
+
+/** A cluster node running in this process, backed by its own AsyncGameServer */
+public class LocalGameNode implements GameNode {
+  private final String nodeId;
+  private final AsyncGameServer server;
+
+  public LocalGameNode(String nodeId, AsyncGameServer server) {
+    this.nodeId = nodeId;
+    this.server = server;
+  }
+
+  @Override
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public AsyncGameServer getServer() {
+    return server;
+  }
+
+  @Override
+  public CompletableFuture<String> submit(String sessionId, Command command) {
+    return server.submit(sessionId, command);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> exportSession(String sessionId) {
+    return server.exportSession(sessionId);
+  }
+
+  @Override
+  public void importSession(String sessionId, byte[] snapshot) {
+    server.importSession(sessionId, snapshot);
+  }
+
+  @Override
+  public Set<String> getSessionIds() {
+    return server.getSessionIds();
+  }
+}
@@ -0,0 +1,150 @@
+package pfister.server;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import pfister.game.AdventureGame;
+import pfister.game.ExamineCache;
+import pfister.game.SessionCodec;
+
+/**
+ * Keeps parked sessions outside the Java heap, as fixed size records in direct ByteBuffer slabs. A
+ * session only exists as an AdventureGame while it is being loaded, run and saved again, the rest
+ * of the time it is a few bytes the garbage collector never looks at. Sessions are identified by a
+ * slot number handed out by allocate, and freed slots are reused before the store grows. The rare
+ * game with more item changes than a record holds is kept as an array on the heap instead, until
+ * it fits in its record again
+ *
+ * <p>Each slot must only be used by one thread at a time, which AsyncGameServer ensures by only
+ * touching a slot from its session's mailbox. Different slots can be used concurrently
+ */
+public class OffHeapSessionStore {
+  /** The size of each slab when no size is given, 64MB */
+  public static final int DEFAULT_SLAB_BYTES = 64 << 20;
+
+  private final SessionCodec codec;
+  private final int recordSize;
+  private final int recordsPerSlab;
+  private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+  /** Games too big for their slot's record, by slot */
+  private final ConcurrentMap<Integer, byte[]> overflow = new ConcurrentHashMap<>();
+
+  // Guarded by this
+  private int nextSlot;
+  private int[] freeSlots = new int[16];
+  private int freeCount;
+
+  public OffHeapSessionStore(SessionCodec codec) {
+    this(codec, DEFAULT_SLAB_BYTES);
+  }
+
+  /**
+   * Creates an empty store, slabs are allocated as sessions are added
+   *
+   * @param codec the codec for the map every stored session is played in
+   * @param slabBytes the size of each slab, rounded down to a whole number of records
+   */
+  public OffHeapSessionStore(SessionCodec codec, int slabBytes) {
+    this.codec = codec;
+    this.recordSize = codec.getRecordSize();
+    this.recordsPerSlab = Math.max(1, slabBytes / recordSize);
+  }
+
+  /**
+   * Stores a new session
+   *
+   * @param game the session's game
+   * @return the slot the session is stored in
+   */
+  public int allocate(AdventureGame game) {
+    int slot;
+    synchronized (this) {
+      slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+      if (slot / recordsPerSlab >= slabs.length) {
+        ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+        grown[slabs.length] = ByteBuffer.allocateDirect(recordsPerSlab * recordSize);
+        slabs = grown;
+      }
+    }
+    save(slot, game);
+    return slot;
+  }
+
+  /**
+   * Rebuilds the game stored in a slot
+   *
+   * @param slot the slot to load
+   * @param examineCache the examine cache for the rebuilt game, or null to not cache
+   * @return the stored game
+   */
+  public AdventureGame load(int slot, ExamineCache examineCache) {
+    byte[] record = overflow.get(slot);
+    if (record != null) {
+      return codec.decode(record, examineCache);
+    }
+    return codec.decode(slabs[slot / recordsPerSlab], offsetOf(slot), examineCache);
+  }
+
+  /**
+   * Overwrites the game stored in a slot
+   *
+   * @param slot the slot to write
+   * @param game the game to store
+   */
+  public void save(int slot, AdventureGame game) {
+    if (codec.tryEncode(game, slabs[slot / recordsPerSlab], offsetOf(slot))) {
+      overflow.remove(slot);
+    } else {
+      overflow.put(slot, codec.encode(game));
+    }
+  }
+
+  /**
+   * Frees a slot for reuse by a later session
+   *
+   * @param slot the slot to free
+   */
+  public synchronized void free(int slot) {
+    overflow.remove(slot);
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+    }
+    freeSlots[freeCount++] = slot;
+  }
+
+  public SessionCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Gets the number of sessions currently stored
+   *
+   * @return the number of sessions
+   */
+  public synchronized int size() {
+    return nextSlot - freeCount;
+  }
+
+  /**
+   * Gets the number of sessions kept on the heap because they are too big for a record
+   *
+   * @return the number of sessions
+   */
+  public int getOverflowCount() {
+    return overflow.size();
+  }
+
+  /**
+   * Gets the memory reserved outside the heap by the slabs
+   *
+   * @return the reserved memory in bytes
+   */
+  public long getReservedBytes() {
+    return (long) slabs.length * recordsPerSlab * recordSize;
+  }
+
+  private int offsetOf(int slot) {
+    return (slot % recordsPerSlab) * recordSize;
+  }
+}
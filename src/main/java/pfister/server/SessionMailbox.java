@@ -0,0 +1,139 @@
+package pfister.server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Runs the tasks of a single session one at a time, in the order they were submitted, on a shared
+ * executor. At most one task from a mailbox is ever running, so the session's game needs no locking,
+ * while the mailboxes of different sessions run in parallel. A mailbox only occupies an executor
+ * thread while it has tasks waiting
+ *
+ * <p>Submitted tasks are pushed onto a stack held in a single field, and the running drain takes the
+ * whole stack at once and reverses it into submission order. An idle mailbox is just that null
+ * field, with no queue or flag objects behind it, so sessions extend this class and an idle session
+ * costs the garbage collector a single object
+ *
+ * <p>If the executor rejects the mailbox, every waiting task is dropped, and tasks implementing Task
+ * are told so they can fail whatever is waiting on them
+ */
+class SessionMailbox implements Executor {
+  /** A task which needs to know if it will never run */
+  interface Task extends Runnable {
+    /**
+     * Called instead of run when the executor rejected the mailbox
+     *
+     * @param e the executor's rejection
+     */
+    void reject(RejectedExecutionException e);
+  }
+
+  /** The most tasks run in one go before giving the executor thread back to other sessions */
+  private static final int BATCH_SIZE = 16;
+
+  /** The bottom of the stack while a drain is scheduled or running and nothing new is waiting */
+  private static final Node DRAINING = new Node(null);
+
+  private static final AtomicReferenceFieldUpdater<SessionMailbox, Node> HEAD =
+      AtomicReferenceFieldUpdater.newUpdater(SessionMailbox.class, Node.class, "head");
+
+  private final Executor executor;
+  /**
+   * The most recently submitted task on top of the others submitted since the last drain took them,
+   * DRAINING if nothing was, or null when the mailbox is idle and no drain is scheduled
+   */
+  private volatile Node head;
+  /** Tasks taken off the stack but not run yet, oldest first. Only touched by the drain */
+  private Node pending;
+
+  SessionMailbox(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Queues a task to run after every task already submitted to this mailbox
+   *
+   * @param task the task to run
+   */
+  @Override
+  public void execute(Runnable task) {
+    Node node = new Node(task);
+    Node top;
+    do {
+      top = head;
+      node.next = top;
+    } while (!HEAD.compareAndSet(this, top, node));
+    // Only the task arriving at an idle mailbox schedules it, the others are picked up by the drain
+    if (top == null) {
+      schedule();
+    }
+  }
+
+  /** Hands the mailbox to the executor, rejecting everything waiting if it refuses */
+  private void schedule() {
+    try {
+      executor.execute(this::drain);
+    } catch (RejectedExecutionException e) {
+      Node waiting = pending;
+      pending = null;
+      // Back to idle, so the next task submitted tries to schedule the mailbox again
+      reject(waiting, e);
+      reject(reverse(HEAD.getAndSet(this, null)), e);
+    }
+  }
+
+  private static void reject(Node node, RejectedExecutionException e) {
+    for (; node != null; node = node.next) {
+      if (node.task instanceof Task) {
+        ((Task) node.task).reject(e);
+      }
+    }
+  }
+
+  private void drain() {
+    boolean idle = false;
+    try {
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        if (pending == null) {
+          pending = reverse(HEAD.getAndSet(this, DRAINING));
+          // Nothing was submitted since the last take, so go idle unless something just was
+          if (pending == null && HEAD.compareAndSet(this, DRAINING, null)) {
+            idle = true;
+            return;
+          }
+          if (pending == null) continue;
+        }
+        Node node = pending;
+        pending = node.next;
+        node.task.run();
+      }
+    } finally {
+      // The head is not null, so no submitter will schedule the mailbox, it has to reschedule itself
+      if (!idle) {
+        schedule();
+      }
+    }
+  }
+
+  /** Reverses a stack of nodes into submission order, leaving out the DRAINING marker */
+  private static Node reverse(Node top) {
+    Node reversed = null;
+    while (top != null && top != DRAINING) {
+      Node next = top.next;
+      top.next = reversed;
+      reversed = top;
+      top = next;
+    }
+    return reversed;
+  }
+
+  private static final class Node {
+    private final Runnable task;
+    private Node next;
+
+    private Node(Runnable task) {
+      this.task = task;
+    }
+  }
+}
@@ -0,0 +1,286 @@
+package pfister.server;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import pfister.input.Command;
+
+/**
+ * A single entry point in front of several game nodes. Sessions are placed on nodes by consistent
+ * hashing of the session id, and every command is routed to the node owning its session. When a
+ * node joins or leaves, only the sessions whose owner changed are moved, each as a compact snapshot
+ * exported from its old node and imported into its new one
+ *
+ * <p>Routing a command only takes a shared lock. Joining and leaving take the lock exclusively
+ * while sessions move, so no command can reach a session's new node before the session does.
+ * Commands routed before a move still run on the old node, before the session is exported
+ *
+ * <p>Joining and leaving wait at most the migration timeout for the sessions to move, so one slow
+ * session cannot hold up every command for long. A session which fails to move, or whose queued
+ * commands have not drained by then, stays on its old node, pinned there so its commands keep going
+ * to it rather than to the node the ring now places it on. A session which timed out is put back on
+ * its old node when its snapshot does arrive, and commands reaching the old node before then start
+ * a fresh session which the snapshot replaces. Pinned sessions are moved again the next time a node
+ * joins or leaves, once they are back on their old node
+ */
+public class ShardedGameCluster {
+  /** How long joining or leaving waits for sessions to move when no timeout is given */
+  public static final long DEFAULT_MIGRATION_TIMEOUT_MILLIS = 5000;
+
+  private final ConsistentHashRing<GameNode> ring;
+  private final long migrationTimeoutNanos;
+  private final ReadWriteLock membership = new ReentrantReadWriteLock();
+  /** Sessions which failed to move, along with the node they stayed on. Guarded by membership */
+  private final Map<String, GameNode> pinned = new HashMap<>();
+  /**
+   * Moves which timed out, for the pinned sessions whose snapshots may still be on their way back to
+   * their old node. Guarded by membership
+   */
+  private final Map<String, CompletableFuture<Void>> late = new HashMap<>();
+
+  public ShardedGameCluster() {
+    this(new ConsistentHashRing<>());
+  }
+
+  /**
+   * Creates a cluster with no nodes, using the default migration timeout
+   *
+   * @param ring an empty ring to place sessions with
+   */
+  public ShardedGameCluster(ConsistentHashRing<GameNode> ring) {
+    this(ring, DEFAULT_MIGRATION_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Creates a cluster with no nodes
+   *
+   * @param ring an empty ring to place sessions with
+   * @param migrationTimeoutMillis how long joining or leaving waits for sessions to move before
+   *     pinning the rest to their old nodes
+   */
+  public ShardedGameCluster(ConsistentHashRing<GameNode> ring, long migrationTimeoutMillis) {
+    this.ring = ring;
+    this.migrationTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(migrationTimeoutMillis);
+  }
+
+  /**
+   * Submits a command to the node owning the session
+   *
+   * @param sessionId the session the command belongs to
+   * @param command the command the player entered
+   * @return a future completed with the output of the command
+   * @throws IllegalStateException If the cluster has no nodes
+   */
+  public CompletableFuture<String> submit(String sessionId, Command command) {
+    membership.readLock().lock();
+    try {
+      return getOwner(sessionId).submit(sessionId, command);
+    } finally {
+      membership.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the node a session belongs to
+   *
+   * @param sessionId the session to place
+   * @return the node owning the session
+   * @throws IllegalStateException If the cluster has no nodes
+   */
+  public GameNode getOwner(String sessionId) {
+    membership.readLock().lock();
+    try {
+      GameNode owner = pinned.get(sessionId);
+      if (owner == null) {
+        owner = ring.nodeFor(sessionId);
+      }
+      if (owner == null) {
+        throw new IllegalStateException("The cluster has no nodes to run sessions on.");
+      }
+      return owner;
+    } finally {
+      membership.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a node, moving it the sessions it now owns from the other nodes. Sessions which fail to
+   * move stay pinned to the node they were on
+   *
+   * @param node the node to add, it must play the same map as the other nodes
+   */
+  public void addNode(GameNode node) {
+    membership.writeLock().lock();
+    try {
+      ring.add(node.getNodeId(), node);
+      Map<String, GameNode> moving = new LinkedHashMap<>(pinned);
+      for (GameNode other : ring.getNodes()) {
+        if (other == node) continue;
+        for (String sessionId : other.getSessionIds()) {
+          if (ring.nodeFor(sessionId) == node) {
+            moving.put(sessionId, other);
+          }
+        }
+      }
+      migrate(moving);
+    } finally {
+      membership.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a node, moving its sessions to their new owners
+   *
+   * @param nodeId the id of the node to remove
+   * @return the removed node, or null if there was no node with that id
+   * @throws IllegalStateException If the node has sessions and is the last node, or if some of its
+   *     sessions failed to move. The node is off the ring either way, but keeps running the
+   *     sessions which failed to move until they are moved by a later join or leave
+   */
+  public GameNode removeNode(String nodeId) {
+    membership.writeLock().lock();
+    try {
+      GameNode node = ring.getNode(nodeId);
+      if (node == null) {
+        return null;
+      }
+      if (ring.getNodes().size() == 1 && !node.getSessionIds().isEmpty()) {
+        throw new IllegalStateException("Cannot remove the last node while it has sessions.");
+      }
+      ring.remove(nodeId);
+      Map<String, GameNode> moving = new LinkedHashMap<>(pinned);
+      for (String sessionId : node.getSessionIds()) {
+        moving.put(sessionId, node);
+      }
+      int failed = migrate(moving);
+      if (pinned.containsValue(node)) {
+        throw new IllegalStateException(
+            failed + " sessions could not be moved off node '" + nodeId + "', it still runs them.");
+      }
+      return node;
+    } finally {
+      membership.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Moves sessions from their old nodes to the nodes now owning them on the ring. Every export is
+   * started before waiting on any of them, so the old nodes drain their queues in parallel, and each
+   * session is imported as soon as its own export completes. A session whose export fails is still
+   * on its old node, one whose import fails is put back on its old node, and one which has not moved
+   * within the migration timeout goes back to its old node once its export completes. Any of them
+   * is pinned to its old node
+   *
+   * @param moving the sessions to move, along with the node each one is currently on
+   * @return the number of sessions which failed to move
+   */
+  private int migrate(Map<String, GameNode> moving) {
+    Map<String, Move> moves = new LinkedHashMap<>();
+    for (Entry<String, GameNode> session : moving.entrySet()) {
+      String sessionId = session.getKey();
+      GameNode from = session.getValue();
+      GameNode to = ring.nodeFor(sessionId);
+      CompletableFuture<Void> lateMove = late.get(sessionId);
+      if (lateMove != null) {
+        // Still on its way back to its old node, so it stays pinned there for now
+        if (!lateMove.isDone()) continue;
+        late.remove(sessionId);
+      }
+      pinned.remove(sessionId);
+      if (to == from) continue;
+      moves.put(sessionId, new Move(sessionId, from, to));
+    }
+    long deadline = System.nanoTime() + migrationTimeoutNanos;
+    int failed = 0;
+    for (Move move : moves.values()) {
+      if (!move.await(deadline)) {
+        pinned.put(move.sessionId, move.from);
+        if (!move.done.isDone()) {
+          late.put(move.sessionId, move.done);
+        }
+        failed++;
+      }
+    }
+    return failed;
+  }
+
+  /** A session being exported from its old node and imported into its new one */
+  private static final class Move {
+    private final String sessionId;
+    private final GameNode from;
+    private final GameNode to;
+    /** Taken by whichever comes first, the snapshot arriving or the wait for it giving up */
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private final CompletableFuture<Void> done;
+
+    private Move(String sessionId, GameNode from, GameNode to) {
+      this.sessionId = sessionId;
+      this.from = from;
+      this.to = to;
+      done = from.exportSession(sessionId).thenAccept(this::arrive);
+    }
+
+    private void arrive(byte[] snapshot) {
+      // The session was closed while it was waiting to be exported
+      if (snapshot == null) return;
+      if (!settled.compareAndSet(false, true)) {
+        // The wait gave up and pinned the session to its old node, so that is where it goes
+        from.importSession(sessionId, snapshot);
+        return;
+      }
+      try {
+        to.importSession(sessionId, snapshot);
+      } catch (RuntimeException e) {
+        from.importSession(sessionId, snapshot);
+        throw e;
+      }
+    }
+
+    /**
+     * Waits for the session to move
+     *
+     * @param deadline the System.nanoTime() after which to give up waiting
+     * @return true if the session moved, false if it stays on its old node
+     */
+    private boolean await(long deadline) {
+      try {
+        done.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        return true;
+      } catch (ExecutionException e) {
+        return false;
+      } catch (TimeoutException e) {
+        return !giveUp();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return !giveUp();
+      }
+    }
+
+    /**
+     * Stops waiting for the session, unless its snapshot has already arrived
+     *
+     * @return true if the session will go back to its old node
+     */
+    private boolean giveUp() {
+      if (settled.compareAndSet(false, true)) {
+        return true;
+      }
+      // The snapshot arrived just now and is being imported, which does not wait on the session
+      try {
+        done.join();
+        return false;
+      } catch (CompletionException e) {
+        return true;
+      }
+    }
+  }
+}
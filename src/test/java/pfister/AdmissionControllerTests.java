@@ -0,0 +1,154 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import pfister.game.GameMap;
+import pfister.input.Command;
+import pfister.server.AdmissionController;
+import pfister.server.AdmissionController.Decision;
+import pfister.server.AsyncGameServer;
+
+public class AdmissionControllerTests {
+  AtomicLong clock;
+  AdmissionController admission;
+
+  @Before
+  public void setUp() {
+    clock = new AtomicLong();
+    // 10 commands a second, bursts of 3, 4 in flight, 50ms latency target
+    admission = new AdmissionController(10, 3, 4, 50, clock::get);
+  }
+
+  @Test
+  public void testBurstThenRateLimited() {
+    for (int i = 0; i < 3; i++) {
+      assertEquals(admission.admit("player"), Decision.ADMITTED);
+      admission.complete(admission.now());
+    }
+    assertEquals(admission.admit("player"), Decision.RATE_LIMITED);
+    assertEquals(admission.getRateLimitedCount(), 1);
+  }
+
+  @Test
+  public void testBucketRefillsOverTime() {
+    for (int i = 0; i < 3; i++) {
+      admission.admit("player");
+      admission.complete(admission.now());
+    }
+    assertEquals(admission.admit("player"), Decision.RATE_LIMITED);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    assertEquals(admission.admit("player"), Decision.ADMITTED);
+  }
+
+  @Test
+  public void testSessionsHaveSeparateBuckets() {
+    for (int i = 0; i < 3; i++) {
+      admission.admit("spammer");
+      admission.complete(admission.now());
+    }
+    assertEquals(admission.admit("spammer"), Decision.RATE_LIMITED);
+    assertEquals(admission.admit("player"), Decision.ADMITTED);
+  }
+
+  @Test
+  public void testShedsPastInFlightLimit() {
+    for (int i = 0; i < 4; i++) {
+      assertEquals(admission.admit("player" + i), Decision.ADMITTED);
+    }
+    assertEquals(admission.admit("player4"), Decision.OVERLOADED);
+    admission.complete(admission.now());
+    assertEquals(admission.admit("player5"), Decision.ADMITTED);
+    assertEquals(admission.getShedCount(), 1);
+  }
+
+  @Test
+  public void testShedCommandsKeepTheirToken() {
+    for (int i = 0; i < 4; i++) {
+      admission.admit("busy" + i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals(admission.admit("player"), Decision.OVERLOADED);
+    }
+    for (int i = 0; i < 4; i++) {
+      admission.complete(admission.now());
+    }
+    for (int i = 0; i < 3; i++) {
+      assertEquals(admission.admit("player"), Decision.ADMITTED);
+    }
+  }
+
+  @Test
+  public void testFullBucketsAreSwept() {
+    for (int i = 0; i < 2000; i++) {
+      admission.admit("player" + i);
+      admission.complete(admission.now());
+      // Every earlier bucket has refilled by the next command
+      clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    }
+    assertTrue(admission.getBucketCount() < 1024);
+    assertEquals(admission.getRateLimitedCount(), 0);
+  }
+
+  @Test
+  public void testShedsWhileLatencyIsOverTarget() {
+    // Slow commands pull the average latency well past the 50ms target
+    for (int i = 0; i < 40; i++) {
+      assertEquals(admission.admit("slow"), Decision.ADMITTED);
+      long admittedAt = admission.now();
+      clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+      admission.complete(admittedAt);
+    }
+    assertTrue(admission.getAverageLatencyNanos() > TimeUnit.MILLISECONDS.toNanos(150));
+    // Only one command is let in until the latency recovers
+    assertEquals(admission.admit("player0"), Decision.ADMITTED);
+    assertEquals(admission.admit("player1"), Decision.OVERLOADED);
+  }
+
+  @Test
+  public void testServerRejectsWithoutStartingAGame() throws IOException, InvalidArgumentException {
+    GameMap map = new GameMap("src/main/resources/map.json");
+    AsyncGameServer server = new AsyncGameServer(map, Runnable::run, null, admission);
+    for (int i = 0; i < 3; i++) {
+      server.submit("player", new Command("examine")).join();
+    }
+    String output = server.submit("player", new Command("examine")).join();
+    assertEquals(output, Decision.RATE_LIMITED.getMessage());
+
+    assertTrue(server.closeSession("player"));
+    assertEquals(admission.admit("other"), Decision.ADMITTED);
+    admission.complete(admission.now());
+    for (int i = 0; i < 4; i++) {
+      admission.admit("busy" + i);
+    }
+    assertEquals(
+        server.submit("newcomer", new Command("examine")).join(), Decision.OVERLOADED.getMessage());
+    assertTrue(server.getSessionIds().isEmpty());
+  }
+
+  @Test
+  public void testFailedSubmitLeavesNothingInFlight() throws IOException, InvalidArgumentException {
+    AsyncGameServer server =
+        new AsyncGameServer(
+            new GameMap("src/main/resources/map.json"),
+            Runnable::run,
+            null,
+            admission,
+            id -> {
+              throw new IllegalStateException("No listener.");
+            });
+    try {
+      server.submit("player", new Command("examine"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals(admission.getInFlight(), 0);
+    }
+  }
+}
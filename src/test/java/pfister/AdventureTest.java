@@ -9,6 +9,7 @@ import org.junit.Before;
 import org.junit.Test;
 import pfister.game.AdventureGame;
 import pfister.game.Direction;
+import pfister.game.GameMap;
 
 public class AdventureTest {
   AdventureGame game;
@@ -68,4 +69,17 @@ public class AdventureTest {
     assertEquals(String.join(",", game.getInventory()), "");
     assertTrue(smackString.contains("The baseball bat breaks"));
   }
+
+  @Test
+  public void testGamesSharingAMapKeepTheirOwnItems() throws IOException, InvalidArgumentException {
+    GameMap map = new GameMap("src/main/resources/map.json");
+    AdventureGame first = new AdventureGame(map);
+    AdventureGame second = new AdventureGame(map);
+    first.take("baseball bat");
+    first.go(Direction.East);
+    first.go(Direction.West);
+    assertEquals(String.join(",", first.getCurrentRoom().getItems()), "");
+    assertEquals(String.join(",", second.getCurrentRoom().getItems()), "baseball bat");
+    assertEquals(String.join(",", map.getStartingRoom().getItems()), "baseball bat");
+  }
 }
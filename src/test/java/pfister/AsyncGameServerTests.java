@@ -0,0 +1,108 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pfister.game.GameMap;
+import pfister.input.Command;
+import pfister.server.AsyncGameServer;
+
+public class AsyncGameServerTests {
+  ExecutorService executor;
+  AsyncGameServer server;
+
+  @Before
+  public void setUp() throws IOException, InvalidArgumentException {
+    executor = Executors.newFixedThreadPool(4);
+    server = new AsyncGameServer(new GameMap("src/main/resources/map.json"), executor);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCommandsForASessionRunInOrder() {
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      results.add(server.submit("player", new Command("take", "baseball bat")));
+      results.add(server.submit("player", new Command("drop", "baseball bat")));
+    }
+    for (int i = 0; i < results.size(); i += 2) {
+      assertEquals(results.get(i).join(), "You take the 'baseball bat'.");
+      assertEquals(results.get(i + 1).join(), "You drop the 'baseball bat'.");
+    }
+  }
+
+  @Test
+  public void testCommandsFromManyThreadsAllRun() throws Exception {
+    List<CompletableFuture<String>> results = Collections.synchronizedList(new ArrayList<>());
+    Thread[] players = new Thread[8];
+    for (int p = 0; p < players.length; p++) {
+      players[p] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 500; i++) {
+                  results.add(server.submit("player", new Command("help")));
+                }
+              });
+      players[p].start();
+    }
+    for (Thread player : players) {
+      player.join();
+    }
+    for (CompletableFuture<String> result : results) {
+      assertTrue(result.get(10, TimeUnit.SECONDS).startsWith("Valid commands"));
+    }
+    assertEquals(results.size(), 4000);
+  }
+
+  @Test
+  public void testSessionsShareTheMapButNotItems() {
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      String session = "player" + i;
+      server.submit(session, new Command("take", "baseball bat"));
+      server.submit(session, new Command("go", "east"));
+      results.add(server.submit(session, new Command("smack")));
+    }
+    for (CompletableFuture<String> result : results) {
+      assertTrue(result.join().contains("The baseball bat breaks"));
+    }
+    assertEquals(server.getSessionIds().size(), 50);
+  }
+
+  @Test
+  public void testClosedSessionStartsOver() {
+    server.submit("player", new Command("go", "east")).join();
+    assertTrue(server.closeSession("player"));
+    String output = server.submit("player", new Command("examine")).join();
+    assertTrue(output.startsWith("You are in a dark room."));
+  }
+
+  @Test
+  public void testRejectedCommandsFailInsteadOfHanging()
+      throws IOException, InvalidArgumentException {
+    ExecutorService stopped = Executors.newSingleThreadExecutor();
+    stopped.shutdown();
+    AsyncGameServer rejecting =
+        new AsyncGameServer(new GameMap("src/main/resources/map.json"), stopped);
+    CompletableFuture<String> result = rejecting.submit("player", new Command("examine"));
+    assertTrue(result.isCompletedExceptionally());
+    // The mailbox is not left stuck, a later command is tried again and fails the same way
+    assertTrue(rejecting.submit("player", new Command("examine")).isCompletedExceptionally());
+  }
+}
@@ -0,0 +1,60 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import pfister.game.AdventureGame;
+import pfister.game.Direction;
+import pfister.game.ExamineCache;
+import pfister.game.GameMap;
+
+public class ExamineCacheTests {
+  GameMap map;
+
+  @Before
+  public void setUp() throws IOException, InvalidArgumentException {
+    map = new GameMap("src/main/resources/map.json");
+  }
+
+  @Test
+  public void testGamesInSameStateShareOutput() {
+    ExamineCache cache = new ExamineCache();
+    AdventureGame first = new AdventureGame(map, cache);
+    AdventureGame second = new AdventureGame(map, cache);
+    assertEquals(first.examine(), second.examine());
+    assertEquals(cache.getMissCount(), 1);
+    assertEquals(cache.getHitCount(), 1);
+  }
+
+  @Test
+  public void testCachedOutputFollowsItems() {
+    ExamineCache cache = new ExamineCache();
+    AdventureGame cached = new AdventureGame(map, cache);
+    AdventureGame uncached = new AdventureGame(map);
+    cached.examine();
+    cached.take("baseball bat");
+    uncached.take("baseball bat");
+    assertEquals(cached.examine(), uncached.examine());
+    assertFalse(cached.examine().contains("Items Visible: baseball bat"));
+    cached.drop("baseball bat");
+    uncached.drop("baseball bat");
+    assertEquals(cached.examine(), uncached.examine());
+    assertEquals(cache.getMissCount(), 2);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvicted() {
+    ExamineCache cache = new ExamineCache(1);
+    AdventureGame game = new AdventureGame(map, cache);
+    game.examine();
+    game.go(Direction.East);
+    game.go(Direction.West);
+    assertEquals(cache.size(), 1);
+    assertEquals(cache.getEvictionCount(), 2);
+    assertEquals(cache.getHitCount(), 0);
+  }
+}
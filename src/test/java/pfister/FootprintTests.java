@@ -0,0 +1,84 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pfister.game.AdventureGame;
+import pfister.game.Footprint;
+import pfister.game.GameMap;
+import pfister.game.MapGenerator;
+import pfister.game.PagedWorld;
+import pfister.game.PagedWorldWriter;
+
+public class FootprintTests {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private String generate(int rooms) throws IOException {
+    String path = folder.newFile("generated" + rooms + ".json").getPath();
+    new MapGenerator(126, rooms, 3, 0.5).generate(path);
+    return path;
+  }
+
+  @Test
+  public void testMapFootprintCounts() throws IOException, InvalidArgumentException {
+    Footprint footprint = new GameMap("src/main/resources/map.json").getFootprint();
+    assertEquals(footprint.getRoomCount(), 15);
+    assertEquals(footprint.getExitCount(), 34);
+    assertEquals(footprint.getItemCount(), 4);
+    assertEquals(footprint.getInventoryBytes(), 0);
+    assertEquals(
+        footprint.getTotalBytes(),
+        footprint.getGraphBytes() + footprint.getTextBytes() + footprint.getItemSetBytes());
+  }
+
+  @Test
+  public void testMapFootprintGrowsWithRooms() throws IOException, InvalidArgumentException {
+    Footprint small = new GameMap(generate(1000)).getFootprint();
+    Footprint large = new GameMap(generate(4000)).getFootprint();
+    assertEquals(large.getRoomCount(), 4000);
+    // Roughly linear, four times the rooms should be three to five times the memory
+    double growth = (double) large.getTotalBytes() / small.getTotalBytes();
+    assertTrue(growth > 3 && growth < 5);
+    assertTrue(large.getGraphBytes() > small.getGraphBytes());
+    assertTrue(large.getItemSetBytes() > small.getItemSetBytes());
+    // Catches a regression back to a String per occurrence of repeated text
+    assertTrue(large.getTextBytes() < large.getGraphBytes());
+  }
+
+  @Test
+  public void testPagedWorldKeepsLessOnTheHeap() throws IOException, InvalidArgumentException {
+    String path = generate(2000);
+    String directory = folder.newFolder("paged").getPath();
+    PagedWorldWriter.write(path, directory);
+    Footprint loaded = new GameMap(path).getFootprint();
+    try (PagedWorld world = new PagedWorld(directory)) {
+      Footprint paged = world.getFootprint();
+      assertEquals(paged.getRoomCount(), loaded.getRoomCount());
+      assertEquals(paged.getExitCount(), loaded.getExitCount());
+      assertEquals(paged.getItemCount(), loaded.getItemCount());
+      assertTrue(paged.getTotalBytes() < loaded.getTotalBytes() / 2);
+    }
+  }
+
+  @Test
+  public void testSessionFootprintTracksInventory() throws IOException, InvalidArgumentException {
+    AdventureGame game = new AdventureGame("src/main/resources/map.json");
+    Footprint started = game.getFootprint();
+    // Rooms are only copied once their items change
+    assertEquals(started.getRoomCount(), 0);
+    assertEquals(started.getItemCount(), 0);
+
+    game.take("baseball bat");
+    Footprint holding = game.getFootprint();
+    assertEquals(holding.getRoomCount(), 1);
+    assertEquals(holding.getItemCount(), 1);
+    assertTrue(holding.getInventoryBytes() > started.getInventoryBytes());
+    assertEquals(holding.getTextBytes(), 0);
+    assertEquals(started.plus(holding).getRoomCount(), 1);
+  }
+}
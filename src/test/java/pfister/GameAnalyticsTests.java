@@ -0,0 +1,126 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import pfister.analytics.GameAnalytics;
+import pfister.game.Direction;
+import pfister.game.GameListener;
+import pfister.game.GameMap;
+import pfister.game.Room;
+import pfister.input.Command;
+import pfister.server.AsyncGameServer;
+
+public class GameAnalyticsTests {
+  AtomicLong clock;
+  GameAnalytics analytics;
+  Room cafeteria = new Room("Cafeteria", "", Collections.emptySet());
+
+  @Before
+  public void setUp() {
+    clock = new AtomicLong();
+    // Two one second windows
+    analytics = new GameAnalytics(1024, 1000, 2, 16, clock::get);
+  }
+
+  @Test
+  public void testCountsEventsFromServer() throws IOException, InvalidArgumentException {
+    AsyncGameServer server =
+        new AsyncGameServer(
+            new GameMap("src/main/resources/map.json"),
+            Runnable::run,
+            null,
+            null,
+            analytics::listenerFor);
+    server.submit("player", new Command("take", "baseball bat"));
+    server.submit("player", new Command("go", "east"));
+    server.submit("player", new Command("smack"));
+    analytics.drain();
+
+    assertEquals(analytics.getRoomVisits("StartingRoom"), 1);
+    assertEquals(analytics.getRoomVisits("Hallway2Men"), 1);
+    assertEquals(analytics.getRoomVisits("Hallway1Man"), 1);
+    assertEquals(analytics.getDirectionExitUses("StartingRoom", Direction.East), 1);
+    assertEquals(analytics.getSmackExitUses("Hallway2Men", "baseball bat"), 1);
+    assertEquals(analytics.getItemTakes("baseball bat"), 1);
+    assertEquals(analytics.getUniquePlayers("Hallway2Men"), 1);
+  }
+
+  @Test
+  public void testTimeToWin() {
+    GameListener listener = analytics.listenerFor("player");
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+    listener.onWin();
+    analytics.drain();
+    assertEquals(analytics.getWinCount(), 1);
+    assertEquals(analytics.getAverageTimeToWinMillis(), 300, 0.001);
+  }
+
+  @Test
+  public void testUniquePlayersIsApproximate() {
+    for (int i = 0; i < 5000; i++) {
+      GameListener listener = analytics.listenerFor("player" + i);
+      listener.onRoomEntered(cafeteria);
+      listener.onRoomEntered(cafeteria);
+      analytics.drain();
+    }
+    long players = analytics.getUniquePlayers("Cafeteria");
+    assertTrue(Math.abs(players - 5000) < 500);
+    assertTrue(analytics.getRoomVisits("Cafeteria") >= 10000);
+  }
+
+  @Test
+  public void testOldWindowsExpire() {
+    analytics.listenerFor("player").onRoomEntered(cafeteria);
+    analytics.drain();
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+    analytics.drain();
+    assertEquals(analytics.getRoomVisits("Cafeteria"), 1);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2000));
+    analytics.drain();
+    assertEquals(analytics.getRoomVisits("Cafeteria"), 0);
+  }
+
+  @Test
+  public void testFullBufferDropsEvents() {
+    GameAnalytics small = new GameAnalytics(4, 1000, 2, 16, clock::get);
+    GameListener listener = small.listenerFor("player");
+    for (int i = 0; i < 10; i++) {
+      listener.onItemTaken(cafeteria, "raygun");
+    }
+    assertEquals(small.getDroppedEventCount(), 6);
+    assertEquals(small.drain(), 4);
+    assertEquals(small.getItemTakes("raygun"), 4);
+  }
+
+  @Test
+  public void testBackgroundConsumerDrainsEvents() throws InterruptedException {
+    GameAnalytics live = new GameAnalytics();
+    live.start();
+    Thread[] players = new Thread[4];
+    for (int p = 0; p < players.length; p++) {
+      GameListener listener = live.listenerFor("player" + p);
+      players[p] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 1000; i++) {
+                  listener.onItemDropped(cafeteria, "raygun");
+                }
+              });
+      players[p].start();
+    }
+    for (Thread player : players) {
+      player.join();
+    }
+    live.close();
+    assertEquals(live.getProcessedEventCount() + live.getDroppedEventCount(), 4000);
+    assertTrue(live.getItemDrops("raygun") >= live.getProcessedEventCount());
+  }
+}
@@ -1,16 +1,25 @@
 package pfister;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
 import com.sun.javaws.exceptions.InvalidArgumentException;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import pfister.game.DirectionExit;
 import pfister.game.GameMap;
+import pfister.game.Room;
+import pfister.game.RoomExit;
+import pfister.game.SmackExit;
 
 public class JSONReadingTests {
   @Rule public ExpectedException ex = ExpectedException.none();
@@ -27,6 +36,44 @@ public class JSONReadingTests {
     GameMap g = new GameMap(jsonMap);
   }
 
+  @Test
+  public void testRepeatedTextIsShared() throws InvalidArgumentException {
+    GameMap g = new GameMap(jsonMap);
+    Room startingRoom = g.getStartingRoom();
+    Room hallway = g.getNextRoom(g.getDirectionExitsForRoom(startingRoom).iterator().next()).get();
+    // The exit back to the starting room names it with its own copy of the string in map.json
+    for (DirectionExit exit : g.getDirectionExitsForRoom(hallway)) {
+      assertSame(exit.getNextRoom(), startingRoom.getRoomName());
+    }
+  }
+
+  @Test
+  public void testStreamingAndTreeLoadingAgree() throws IOException, InvalidArgumentException {
+    GameMap streamed = new GameMap("src/main/resources/map.json");
+    GameMap tree = new GameMap(jsonMap);
+    assertEquals(streamed.getRoomCount(), tree.getRoomCount());
+    for (int id = 0; id < tree.getRoomCount(); id++) {
+      Room expected = tree.getRoom(id);
+      Room actual = streamed.getRoom(id);
+      assertEquals(actual.getRoomName(), expected.getRoomName());
+      assertEquals(actual.getDescription(), expected.getDescription());
+      assertEquals(actual.getItems(), expected.getItems());
+      assertEquals(describeExits(streamed, actual), describeExits(tree, expected));
+    }
+  }
+
+  private static Set<String> describeExits(GameMap map, Room room) {
+    Set<String> exits = new HashSet<>();
+    for (RoomExit exit : map.getExitsForRoom(room)) {
+      String kind =
+          exit instanceof DirectionExit
+              ? ((DirectionExit) exit).getDirection() + ((DirectionExit) exit).getOutcomeText()
+              : ((SmackExit) exit).getItemUsed();
+      exits.add(kind + exit.getDescription() + map.getNextRoom(exit).get().getRoomName());
+    }
+    return exits;
+  }
+
   @Test()
   public void testMapWithRoomExitToUndefinedRoom() throws IOException, InvalidArgumentException {
     ex.expect(InvalidArgumentException.class);
@@ -82,4 +129,23 @@ public class JSONReadingTests {
     ex.expectMessage("Items within");
     GameMap g = new GameMap("src/main/resources/test/testNonUniqueSmackItems.json");
   }
+
+  @Test
+  public void testLenientJson() throws IOException, InvalidArgumentException {
+    GameMap g = new GameMap("src/main/resources/test/testLenientJson.json");
+    assertEquals(String.join(",", g.getStartingRoom().getItems()), "baseball bat");
+  }
+
+  @Test
+  public void testTreeLoadingReportsTheSameErrors()
+      throws FileNotFoundException, InvalidArgumentException {
+    ex.expect(InvalidArgumentException.class);
+    ex.expectMessage("Room object must have defined fields of");
+    ex.expectMessage("Room: 'test'");
+    JsonArray rooms =
+        JsonParser.parseReader(
+                new FileReader("src/main/resources/test/testNoRequiredRoomFields.json"))
+            .getAsJsonArray();
+    GameMap g = new GameMap(rooms);
+  }
 }
@@ -0,0 +1,66 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pfister.game.DirectionExit;
+import pfister.game.GameMap;
+import pfister.game.MapGenerator;
+import pfister.game.Room;
+
+public class MapGeneratorTests {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static String generate(long seed, int rooms) throws IOException {
+    StringWriter out = new StringWriter();
+    new MapGenerator(seed, rooms, 3, 0.5).generate(out);
+    return out.toString();
+  }
+
+  @Test
+  public void testSameSeedGeneratesSameMap() throws IOException {
+    assertEquals(generate(126, 50), generate(126, 50));
+    assertNotEquals(generate(126, 50), generate(127, 50));
+  }
+
+  @Test
+  public void testGeneratedMapCanBeLoadedAndWon() throws IOException, InvalidArgumentException {
+    String path = folder.newFile("generated.json").getPath();
+    new MapGenerator(126, 200, 2, 0.5).generate(path);
+    GameMap map = new GameMap(path);
+
+    // Walk every direction exit from the starting room, looking for the win room
+    Set<String> seen = new HashSet<>();
+    Deque<Room> toVisit = new ArrayDeque<>();
+    toVisit.add(map.getStartingRoom());
+    while (!toVisit.isEmpty()) {
+      Room room = toVisit.pop();
+      if (!seen.add(room.getRoomName())) continue;
+      for (DirectionExit exit : map.getDirectionExitsForRoom(room)) {
+        toVisit.add(map.getNextRoom(exit).get());
+      }
+    }
+    assertTrue(seen.contains("win"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooFewRooms() {
+    new MapGenerator(126, 9, 2, 0.5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBranchingFactorAboveDirectionCount() {
+    new MapGenerator(126, 100, 5, 0.5);
+  }
+}
@@ -0,0 +1,142 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pfister.game.AdventureGame;
+import pfister.game.Direction;
+import pfister.game.DirectionExit;
+import pfister.game.GameMap;
+import pfister.game.MapGenerator;
+import pfister.game.Room;
+import pfister.game.SessionCodec;
+import pfister.input.Command;
+import pfister.server.AsyncGameServer;
+import pfister.server.OffHeapSessionStore;
+
+public class OffHeapSessionStoreTests {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  GameMap map;
+  SessionCodec codec;
+
+  @Before
+  public void setUp() throws IOException, InvalidArgumentException {
+    map = new GameMap("src/main/resources/map.json");
+    codec = new SessionCodec(map);
+  }
+
+  @Test
+  public void testParkedGameIsRestored() {
+    OffHeapSessionStore store = new OffHeapSessionStore(codec);
+    AdventureGame game = new AdventureGame(map);
+    game.take("baseball bat");
+    game.go(Direction.East);
+    game.drop("baseball bat");
+    int slot = store.allocate(game);
+
+    AdventureGame restored = store.load(slot, null);
+    assertEquals(restored.getCurrentRoom().getRoomName(), "Hallway2Men");
+    assertEquals(restored.examine(), game.examine());
+    restored.go(Direction.West);
+    assertEquals(String.join(",", restored.getCurrentRoom().getItems()), "");
+    restored.go(Direction.East);
+    assertEquals(restored.take("baseball bat"), "You take the 'baseball bat'.");
+  }
+
+  @Test
+  public void testFreedSlotsAreReused() {
+    // Slabs of two records, so the store has to grow past its first slab
+    OffHeapSessionStore store = new OffHeapSessionStore(codec, codec.getRecordSize() * 2);
+    List<Integer> slots = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      slots.add(store.allocate(new AdventureGame(map)));
+    }
+    assertEquals(store.size(), 5);
+    assertEquals(store.getReservedBytes(), codec.getRecordSize() * 6L);
+    store.free(slots.get(1));
+    assertEquals(store.allocate(new AdventureGame(map)), (int) slots.get(1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTooManyItemChanges() {
+    SessionCodec smallCodec = new SessionCodec(map, 0);
+    AdventureGame game = new AdventureGame(map);
+    game.take("baseball bat");
+    smallCodec.encode(game, ByteBuffer.allocate(smallCodec.getRecordSize()), 0);
+  }
+
+  @Test
+  public void testGamesTooBigForARecordOverflow() throws IOException, InvalidArgumentException {
+    // Three items in every room of a single corridor, so a player can take far more than 32 items
+    String path = folder.newFile("corridor.json").getPath();
+    new MapGenerator(1, 200, 1, 3.0).generate(path);
+    GameMap corridor = new GameMap(path);
+    OffHeapSessionStore store = new OffHeapSessionStore(new SessionCodec(corridor));
+    AsyncGameServer server = new AsyncGameServer(corridor, Runnable::run, store);
+
+    Room room = corridor.getStartingRoom();
+    int taken = 0;
+    while (taken <= 40) {
+      for (String item : room.getItems()) {
+        assertEquals(
+            server.submit("player", new Command("take", item)).join(),
+            "You take the '" + item + "'.");
+        taken++;
+      }
+      DirectionExit exit = corridor.getDirectionExitsForRoom(room).iterator().next();
+      server.submit("player", new Command("go", exit.getDirection().toString())).join();
+      room = corridor.getNextRoom(exit).get();
+    }
+    assertEquals(store.getOverflowCount(), 1);
+    String examine = server.submit("player", new Command("examine")).join();
+    assertTrue(examine.contains("Items Visible: " + String.join(",", room.getItems())));
+    for (int item = 0; item < taken; item++) {
+      assertTrue(examine.contains("item" + item));
+    }
+    server.closeSession("player");
+    assertEquals(store.getOverflowCount(), 0);
+  }
+
+  @Test
+  public void testServerParksSessionsOffHeap() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    OffHeapSessionStore store = new OffHeapSessionStore(codec);
+    AsyncGameServer server = new AsyncGameServer(map, executor, store);
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      String session = "player" + i;
+      server.submit(session, new Command("take", "baseball bat"));
+      server.submit(session, new Command("go", "east"));
+      results.add(server.submit(session, new Command("smack")));
+    }
+    for (CompletableFuture<String> result : results) {
+      assertTrue(result.join().contains("The baseball bat breaks"));
+    }
+    assertEquals(store.size(), 50);
+    executor.shutdown();
+  }
+
+  @Test
+  public void testClosingFreesSlotWhenExecutorRejects() {
+    ExecutorService stopped = Executors.newSingleThreadExecutor();
+    stopped.shutdown();
+    OffHeapSessionStore store = new OffHeapSessionStore(codec);
+    AsyncGameServer server = new AsyncGameServer(map, stopped, store);
+    assertTrue(server.submit("player", new Command("examine")).isCompletedExceptionally());
+    assertEquals(store.size(), 1);
+    assertTrue(server.closeSession("player"));
+    assertEquals(store.size(), 0);
+  }
+}
@@ -0,0 +1,104 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.util.HashSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import pfister.game.AdventureGame;
+import pfister.game.Direction;
+import pfister.game.PagedWorld;
+import pfister.game.PagedWorldWriter;
+
+public class PagedWorldTests {
+  @Rule public ExpectedException ex = ExpectedException.none();
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  String worldPath;
+
+  @Before
+  public void setUp() throws IOException, InvalidArgumentException {
+    worldPath = folder.getRoot().getPath();
+    // Two rooms per region so the map is spread over several regions
+    PagedWorldWriter.write("src/main/resources/map.json", worldPath, 2);
+  }
+
+  @Test
+  public void testPagedWorldCanBeLoaded() throws IOException {
+    PagedWorld world = new PagedWorld(worldPath);
+    assertEquals(world.getRoomCount(), 15);
+    assertEquals(world.getStartingRoom().getRoomName(), "StartingRoom");
+  }
+
+  @Test
+  public void testExamineMatchesGameMap() throws IOException, InvalidArgumentException {
+    AdventureGame pagedGame = new AdventureGame(new PagedWorld(worldPath));
+    AdventureGame game = new AdventureGame("src/main/resources/map.json");
+    assertEquals(pagedGame.examine(), game.examine());
+  }
+
+  @Test
+  public void testPlayingThroughPagedWorldWithSmallCache() throws IOException {
+    AdventureGame game = new AdventureGame(new PagedWorld(worldPath, 2));
+    game.take("baseball bat");
+    game.go(Direction.East);
+    assertEquals(game.getCurrentRoom().getRoomName(), "Hallway2Men");
+    String smackString = game.smack();
+    assertTrue(smackString.contains("The baseball bat breaks"));
+    assertEquals(game.getCurrentRoom().getRoomName(), "Hallway1Man");
+    game.smack();
+    assertEquals(game.getCurrentRoom().getRoomName(), "Cafeteria");
+  }
+
+  @Test
+  public void testItemsDroppedInPagedWorldStayInRoom() throws IOException {
+    AdventureGame game = new AdventureGame(new PagedWorld(worldPath, 2));
+    game.take("baseball bat");
+    game.go(Direction.East);
+    game.drop("baseball bat");
+    game.go(Direction.West);
+    assertEquals(String.join(",", game.getCurrentRoom().getItems()), "");
+    game.go(Direction.East);
+    assertEquals(String.join(",", game.getCurrentRoom().getItems()), "baseball bat");
+  }
+
+  @Test
+  public void testMapWithRoomExitToUndefinedRoom() throws IOException, InvalidArgumentException {
+    ex.expect(InvalidArgumentException.class);
+    ex.expectMessage("not found in the game map");
+    PagedWorldWriter.write(
+        "src/main/resources/test/testMapWithRoomExitToUndefinedRoom.json",
+        folder.newFolder().getPath());
+  }
+
+  @Test
+  public void testGarbageJsonArray() throws IOException, InvalidArgumentException {
+    ex.expect(InvalidArgumentException.class);
+    ex.expectMessage("Element in rooms array cannot be parsed");
+    PagedWorldWriter.write(
+        "src/main/resources/test/testGarbageJsonArray.json", folder.newFolder().getPath());
+  }
+
+  @Test
+  public void testLenientJsonCanBeConverted() throws IOException, InvalidArgumentException {
+    String lenientPath = folder.newFolder("lenient").getPath();
+    PagedWorldWriter.write("src/main/resources/test/testLenientJson.json", lenientPath);
+    try (PagedWorld world = new PagedWorld(lenientPath)) {
+      assertEquals(world.getStartingRoom().getDescription(), "A room written by hand.");
+    }
+  }
+
+  @Test
+  public void testInitialItemsMatchRooms() throws IOException {
+    try (PagedWorld world = new PagedWorld(worldPath)) {
+      for (int room = 0; room < world.getRoomCount(); room++) {
+        assertEquals(new HashSet<>(world.getInitialItems(room)), world.getRoom(room).getItems());
+      }
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package pfister;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pfister.game.GameMap;
+import pfister.input.Command;
+import pfister.server.AsyncGameServer;
+import pfister.server.ConsistentHashRing;
+import pfister.server.GameNode;
+import pfister.server.LocalGameNode;
+import pfister.server.ShardedGameCluster;
+
+public class ShardedGameClusterTests {
+  ExecutorService executor;
+  GameMap map;
+  ShardedGameCluster cluster;
+
+  @Before
+  public void setUp() throws IOException, InvalidArgumentException {
+    executor = Executors.newFixedThreadPool(4);
+    map = new GameMap("src/main/resources/map.json");
+    cluster = new ShardedGameCluster();
+    for (int i = 0; i < 3; i++) {
+      cluster.addNode(node("node" + i));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private LocalGameNode node(String nodeId) {
+    return new LocalGameNode(nodeId, new AsyncGameServer(map, executor));
+  }
+
+  /** Starts each session with the bat in hand, standing next to the guards */
+  private void startSessions(int count) {
+    for (int i = 0; i < count; i++) {
+      cluster.submit("player" + i, new Command("take", "baseball bat"));
+      cluster.submit("player" + i, new Command("go", "east")).join();
+    }
+  }
+
+  @Test
+  public void testSessionsAreSpreadOverNodes() {
+    startSessions(300);
+    Set<GameNode> owners = new HashSet<>();
+    for (int i = 0; i < 300; i++) {
+      GameNode owner = cluster.getOwner("player" + i);
+      assertTrue(owner.getSessionIds().contains("player" + i));
+      owners.add(owner);
+    }
+    assertEquals(owners.size(), 3);
+  }
+
+  @Test
+  public void testSessionsMoveWithStateWhenNodeJoins() {
+    startSessions(100);
+    Map<String, GameNode> owners = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      owners.put("player" + i, cluster.getOwner("player" + i));
+    }
+    LocalGameNode joined = node("node3");
+    cluster.addNode(joined);
+    assertTrue(joined.getSessionIds().size() > 0);
+    for (int i = 0; i < 100; i++) {
+      String session = "player" + i;
+      GameNode owner = cluster.getOwner(session);
+      // Only sessions moving to the new node change owner
+      if (owner != joined) {
+        assertSame(owner, owners.get(session));
+      }
+      assertTrue(cluster.submit(session, new Command("smack")).join().contains("bat breaks"));
+    }
+  }
+
+  @Test
+  public void testSessionsMoveWithStateWhenNodeLeaves() {
+    startSessions(100);
+    GameNode removed = cluster.removeNode("node1");
+    assertTrue(removed.getSessionIds().isEmpty());
+    for (int i = 0; i < 100; i++) {
+      String session = "player" + i;
+      assertNotSame(cluster.getOwner(session), removed);
+      assertTrue(cluster.submit(session, new Command("smack")).join().contains("bat breaks"));
+    }
+  }
+
+  @Test
+  public void testSessionsWhichFailToExportStayOnTheirNode() {
+    cluster = new ShardedGameCluster();
+    GameNode stuck = new FailingNode(node("node0"), true, false);
+    cluster.addNode(stuck);
+    cluster.addNode(node("node1"));
+    startSessions(100);
+    cluster.addNode(node("node2"));
+    for (int i = 0; i < 100; i++) {
+      String session = "player" + i;
+      if (stuck.getSessionIds().contains(session)) {
+        assertSame(cluster.getOwner(session), stuck);
+      }
+      assertTrue(cluster.submit(session, new Command("smack")).join().contains("bat breaks"));
+    }
+    try {
+      cluster.removeNode("node0");
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(stuck.getSessionIds().size() > 0);
+    }
+  }
+
+  @Test
+  public void testSessionsWhichFailToImportGoBack() {
+    startSessions(100);
+    GameNode broken = new FailingNode(node("node3"), false, true);
+    cluster.addNode(broken);
+    assertTrue(broken.getSessionIds().isEmpty());
+    for (int i = 0; i < 100; i++) {
+      String session = "player" + i;
+      assertNotSame(cluster.getOwner(session), broken);
+      assertTrue(cluster.submit(session, new Command("smack")).join().contains("bat breaks"));
+    }
+  }
+
+  @Test
+  public void testSessionsWhichTimeOutStayOnTheirNode() {
+    cluster = new ShardedGameCluster(new ConsistentHashRing<>(), 50);
+    CompletableFuture<Void> release = new CompletableFuture<>();
+    GameNode slow = new SlowNode(node("node0"), release);
+    cluster.addNode(slow);
+    cluster.addNode(node("node1"));
+    startSessions(100);
+    Set<String> onSlow = new HashSet<>(slow.getSessionIds());
+    cluster.addNode(node("node2"));
+    for (String session : onSlow) {
+      assertSame(cluster.getOwner(session), slow);
+    }
+    // The exports finish after the wait gave up, so the sessions go back to the slow node
+    release.complete(null);
+    assertEquals(slow.getSessionIds(), onSlow);
+    for (int i = 0; i < 100; i++) {
+      String session = "player" + i;
+      assertTrue(cluster.submit(session, new Command("smack")).join().contains("bat breaks"));
+    }
+    // Once back, they move on the next join
+    cluster.addNode(node("node3"));
+    for (String session : onSlow) {
+      assertTrue(cluster.getOwner(session).getSessionIds().contains(session));
+    }
+  }
+
+  /** A node whose exports only complete once released */
+  private static final class SlowNode implements GameNode {
+    private final GameNode node;
+    private final CompletableFuture<Void> release;
+
+    private SlowNode(GameNode node, CompletableFuture<Void> release) {
+      this.node = node;
+      this.release = release;
+    }
+
+    @Override
+    public String getNodeId() {
+      return node.getNodeId();
+    }
+
+    @Override
+    public CompletableFuture<String> submit(String sessionId, Command command) {
+      return node.submit(sessionId, command);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> exportSession(String sessionId) {
+      return node.exportSession(sessionId).thenCombine(release, (snapshot, released) -> snapshot);
+    }
+
+    @Override
+    public void importSession(String sessionId, byte[] snapshot) {
+      node.importSession(sessionId, snapshot);
+    }
+
+    @Override
+    public Set<String> getSessionIds() {
+      return node.getSessionIds();
+    }
+  }
+
+  /** A node whose exports or imports always fail */
+  private static final class FailingNode implements GameNode {
+    private final GameNode node;
+    private final boolean failExports;
+    private final boolean failImports;
+
+    private FailingNode(GameNode node, boolean failExports, boolean failImports) {
+      this.node = node;
+      this.failExports = failExports;
+      this.failImports = failImports;
+    }
+
+    @Override
+    public String getNodeId() {
+      return node.getNodeId();
+    }
+
+    @Override
+    public CompletableFuture<String> submit(String sessionId, Command command) {
+      return node.submit(sessionId, command);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> exportSession(String sessionId) {
+      if (failExports) {
+        CompletableFuture<byte[]> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Export failed."));
+        return failed;
+      }
+      return node.exportSession(sessionId);
+    }
+
+    @Override
+    public void importSession(String sessionId, byte[] snapshot) {
+      if (failImports) {
+        throw new IllegalStateException("Import failed.");
+      }
+      node.importSession(sessionId, snapshot);
+    }
+
+    @Override
+    public Set<String> getSessionIds() {
+      return node.getSessionIds();
+    }
+  }
+}